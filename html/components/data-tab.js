@@ -122,7 +122,8 @@ function createDataTab(tab) {
       buttons: {
         'Yes, Remove': function () {
           games.find(selector).each(function () {
-            WS.Set('ScoreBoard.Game(' + $(this).attr('id') + ')', null);
+            var type = $(this).hasClass('Archived') ? 'ArchivedGame' : 'Game';
+            WS.Set('ScoreBoard.' + type + '(' + $(this).attr('id') + ')', null);
           });
           teams.find(selector).each(function () {
             WS.Set('ScoreBoard.PreparedTeam(' + $(this).attr('id') + ')', null);
@@ -260,23 +261,32 @@ function createDataTab(tab) {
     .end()
     .appendTo(tab);
 
-  WS.Register('ScoreBoard.Game(*).Name', function (k, v) {
-    games.find('tr.Content[id="' + k.Game + '"]').remove();
-    if (v == null) {
+  function updateGameRow(id, name, archived) {
+    games.find('tr.Content' + (archived ? '.Archived' : ':not(.Archived)') + '[id="' + id + '"]').remove();
+    if (name == null) {
       return;
     }
-    var row = itemTemplate.clone(true);
-    row.attr('name', v).attr('id', k.Game);
-    row.find('td.Name>span').text(v);
+    var row = itemTemplate.clone(true).toggleClass('Archived', archived);
+    row.attr('name', name).attr('id', id);
+    row.find('td.Name>span').text(name);
+    // Archived games are exported from and opened from their snapshot.
     row
       .find('a.Download')
-      .attr('href', '/SaveJSON/crg-game-' + v.replace(/[\/|\\:*?"<>\ ]/g, '_') + '.json?path=ScoreBoard.Game(' + k.Game + ')');
+      .attr('href', '/SaveJSON/crg-game-' + name.replace(/[\/|\\:*?"<>\ ]/g, '_') + '.json?path=ScoreBoard.Game(' + id + ')');
     row
       .find('a.Edit')
-      .attr('href', '/nso/hnso?game=' + k.Game)
+      .attr('href', '/nso/hnso?game=' + id)
       .text('Edit')
       .button();
     _windowFunctions.appendAlphaSortedByAttr(games.children('tbody'), row, 'name');
+  }
+
+  WS.Register('ScoreBoard.Game(*).Name', function (k, v) {
+    updateGameRow(k.Game, v, false);
+  });
+
+  WS.Register('ScoreBoard.ArchivedGame(*).Name', function (k, v) {
+    updateGameRow(k.ArchivedGame, v, true);
   });
 
   WS.Register('ScoreBoard.PreparedTeam(*).FullName', function (k, v) {
@@ -149,6 +149,9 @@ function createNonViewRows(table) {
   var defaultGameNameFormat = $('<label>Name format for new games: </label>').add(
     WSControl('ScoreBoard.Settings.Setting(ScoreBoard.Game.DefaultNameFormat)', $('<input type="text" size="25">'))
   );
+  var archiveDelay = $('<label>Unload finished games from memory after (empty for never): </label>').add(
+    WSControl('ScoreBoard.Settings.Setting(ScoreBoard.Game.ArchiveDelay)', $('<input type="text" size="5">'))
+  );
 
   $('<tr>')
     .appendTo(table)
@@ -190,6 +193,11 @@ function createNonViewRows(table) {
     .append(useLTButton)
     .next()
     .append(statsbookFile);
+  $('<tr><td colspan="3"/></tr>')
+    .appendTo(optionsTable)
+    .addClass('ScoreBoardOptions')
+    .find('td')
+    .append(archiveDelay);
   $('<tr><td/><td/><td/></tr>')
     .appendTo(optionsTable)
     .addClass('ScoreBoardOptions EndSubSection Footer')
@@ -8,6 +8,16 @@ var WS = {
   state: {},
   heartbeat: null,
   debug: false,
+  // Ask for the compact binary protocol where the browser can decode it.
+  binary: typeof ArrayBuffer !== 'undefined' && typeof TextDecoder !== 'undefined',
+  _binaryPaths: [],
+  _binaryInts: [],
+  _binarySequence: 0,
+  // Number of the last state we got, so a reconnect only needs what we missed.
+  sequence: null,
+  // Paths the server has been sent a Register for on the current connection.
+  // Only for these is our state as of WS.sequence.
+  _registered: {},
 
   /* jshint -W117 */
   Connect: function (callback) {
@@ -37,6 +47,9 @@ var WS = {
       }
     }
     url += '&platform=' + encodeURIComponent(platform);
+    if (WS.binary) {
+      url += '&proto=bin';
+    }
 
     if (WS.Connected !== true || !WS.socket) {
       if (WS.debug) {
@@ -44,28 +57,45 @@ var WS = {
       }
 
       WS.socket = new WebSocket(url);
+      WS.socket.binaryType = 'arraybuffer';
+      // Path ids are per connection.
+      WS._binaryPaths = [];
+      WS._binaryInts = [];
+      WS._binarySequence = 0;
       WS.socket.onopen = function (e) {
         WS.Connected = true;
         if (WS.debug) {
           console.log('WS', 'Websocket: Open');
         }
         $('.ConnectionError').addClass('Connected');
-        var req = {
-          action: 'Register',
-          paths: [],
-        };
-        $.each(Object.keys(WS.state), function (idx, k) {
-          WS.triggerCallback(k, null);
-        });
-        WS.state = {};
-        $.each(WS.callbacks, function (idx, c) {
-          req.paths.push(c.path);
-        });
-        $.each(WS.batchCallbacks, function (idx, c) {
-          req.paths.push(c.path);
+        var previous = WS._registered;
+        WS._registered = {};
+        if (WS.sequence == null) {
+          WS._resync();
+          previous = {};
+        }
+        // Keep our state for paths the last connection had registered, the server
+        // either sends what changed since or tells us to resync. Paths registered
+        // while we were disconnected never got their values, so they need all of them.
+        var resumed = [];
+        var added = [];
+        var seen = {};
+        $.each(WS.callbacks.concat(WS.batchCallbacks), function (idx, c) {
+          if (seen[c.path]) {
+            return;
+          }
+          seen[c.path] = true;
+          if (previous[c.path]) {
+            resumed.push(c.path);
+          } else {
+            added.push(c.path);
+          }
         });
-        if (req.paths.length > 0) {
-          WS.send(JSON.stringify(req));
+        if (resumed.length > 0) {
+          WS._sendRegister(resumed, WS.sequence);
+        }
+        if (added.length > 0) {
+          WS._sendRegister(added, null);
         }
         if (WS.connectCallback != null) {
           WS.connectCallback();
@@ -74,6 +104,14 @@ var WS = {
         WS.heartbeat = setInterval(WS.Command, 30000, 'Ping');
       };
       WS.socket.onmessage = function (e) {
+        if (e.data instanceof ArrayBuffer) {
+          var state = WS._decodeBinary(new Uint8Array(e.data));
+          if (WS.debug) {
+            console.log('WS', state);
+          }
+          WS.processUpdate(state);
+          return;
+        }
         var json = JSON.parse(e.data);
         if (WS.debug) {
           console.log('WS', json);
@@ -81,9 +119,15 @@ var WS = {
         if (json.authorization != null) {
           alert(json.authorization);
         }
+        if (json.resync) {
+          WS._resync();
+        }
         if (json.state != null) {
           WS.processUpdate(json.state);
         }
+        if (json.seq != null) {
+          WS.sequence = json.seq;
+        }
       };
       WS.socket.onclose = function (e) {
         WS.Connected = false;
@@ -110,10 +154,36 @@ var WS = {
     }
   },
 
+  _resync: function () {
+    'use strict';
+    $.each(Object.keys(WS.state), function (idx, k) {
+      WS.triggerCallback(k, null);
+    });
+    WS.state = {};
+  },
+
   send: function (data) {
     'use strict';
     if (WS.socket != null && WS.socket.readyState === 1) {
       WS.socket.send(data);
+      return true;
+    }
+    return false;
+  },
+
+  _sendRegister: function (paths, since) {
+    'use strict';
+    var req = {
+      action: 'Register',
+      paths: paths,
+    };
+    if (since != null) {
+      req.since = since;
+    }
+    if (WS.send(JSON.stringify(req))) {
+      $.each(paths, function (idx, path) {
+        WS._registered[path] = true;
+      });
     }
   },
 
@@ -137,6 +207,72 @@ var WS = {
     WS.send(JSON.stringify(req));
   },
 
+  // Counterpart of BinaryStateEncoder.java, see there for the format.
+  _decodeBinary: function (bytes) {
+    'use strict';
+    var pos = 0;
+    var utf8 = new TextDecoder('utf-8');
+    function varint() {
+      // No bitwise operations, they would truncate to 32 bits.
+      var result = 0;
+      var mul = 1;
+      var b;
+      do {
+        b = bytes[pos++];
+        result += (b & 0x7f) * mul;
+        mul *= 128;
+      } while (b >= 0x80);
+      return result;
+    }
+    function signed() {
+      var z = varint();
+      return z % 2 === 0 ? z / 2 : -(z + 1) / 2;
+    }
+    function text() {
+      var len = varint();
+      pos += len;
+      return utf8.decode(bytes.subarray(pos - len, pos));
+    }
+
+    var state = {};
+    if (bytes[pos++] !== 2) {
+      console.log('WS', 'Unknown binary frame version', bytes[0]);
+      return state;
+    }
+    WS._binarySequence += signed();
+    if (WS._binarySequence !== 0) {
+      WS.sequence = WS._binarySequence;
+    }
+    var i;
+    var count = varint();
+    for (i = 0; i < count; i++) {
+      WS._binaryPaths.push(text());
+    }
+    count = varint();
+    var id = 0;
+    for (i = 0; i < count; i++) {
+      id += varint();
+      var tag = bytes[pos++];
+      var v;
+      if (tag === 0) {
+        v = null;
+      } else if (tag === 1 || tag === 2) {
+        v = tag === 2;
+      } else if (tag === 3) {
+        v = signed();
+      } else if (tag === 4) {
+        v = WS._binaryInts[id] + signed();
+      } else if (tag === 5) {
+        v = text();
+      } else {
+        v = JSON.parse(text());
+      }
+      WS._binaryInts[id] = tag === 3 || tag === 4 ? v : undefined;
+      state[WS._binaryPaths[id]] = v;
+    }
+    return state;
+  },
+
   triggerCallback: function (k, v) {
     'use strict';
     k = WS._enrichProp(k);
@@ -320,11 +456,7 @@ var WS = {
       WS.batchCallbacks.push({ path: path, callback: batchCallback });
     });
 
-    var req = {
-      action: 'Register',
-      paths: paths,
-    };
-    WS.send(JSON.stringify(req));
+    WS._sendRegister(paths, null);
   },
 
   _addToTrie: function (t, key, value) {
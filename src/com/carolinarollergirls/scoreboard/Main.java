@@ -27,9 +27,12 @@ import javax.swing.JTextArea;
 
 import com.carolinarollergirls.scoreboard.core.ScoreBoardImpl;
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
+import com.carolinarollergirls.scoreboard.event.ModelThread;
 import com.carolinarollergirls.scoreboard.jetty.JettyServletScoreBoardController;
+import com.carolinarollergirls.scoreboard.jetty.WS;
 import com.carolinarollergirls.scoreboard.json.AutoSaveJSONState;
 import com.carolinarollergirls.scoreboard.json.JSONStateManager;
+import com.carolinarollergirls.scoreboard.json.JSONStateSnapshotter;
 import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONListener;
 import com.carolinarollergirls.scoreboard.utils.BasePath;
 import com.carolinarollergirls.scoreboard.utils.Logger;
@@ -55,6 +58,10 @@ public class Main extends Logger {
             if (!Version.load()) { stop(null); }
         } catch (IOException e) { stop(e); }
 
+        if (modelThread) {
+            Logger.printMessage("Applying all changes on a single model thread");
+            ModelThread.start();
+        }
         scoreBoard = new ScoreBoardImpl();
 
         // JSON updates.
@@ -62,7 +69,8 @@ public class Main extends Logger {
         new ScoreBoardJSONListener(scoreBoard, jsm);
 
         // Controllers.
-        JettyServletScoreBoardController jetty = new JettyServletScoreBoardController(scoreBoard, jsm, host, port);
+        JettyServletScoreBoardController jetty =
+            new JettyServletScoreBoardController(scoreBoard, jsm, host, port, wsPolicy);
 
         // Viewers.
         new ScoreBoardMetricsCollector(scoreBoard).register();
@@ -79,7 +87,7 @@ public class Main extends Logger {
         });
 
         // Only start auto-saves once everything is loaded in.
-        final AutoSaveJSONState autosaver = new AutoSaveJSONState(jsm, autoSaveDir);
+        final AutoSaveJSONState autosaver = new AutoSaveJSONState(jsm, autoSaveDir, binaryAutosave);
         jetty.start();
 
         Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -87,6 +95,8 @@ public class Main extends Logger {
             public void run() {
                 // Save any changes since last regular autosave before we shutdown.
                 autosaver.run();
+                // As well as game snapshots that are waiting to be written.
+                JSONStateSnapshotter.flushAll();
             }
         });
     }
@@ -127,6 +137,20 @@ public class Main extends Logger {
                 host = arg.split("=", 2)[1];
             } else if (arg.startsWith("--import=") || arg.startsWith("-i=")) {
                 importPath = arg.split("=", 2)[1];
+            } else if (arg.equals("--model-thread")) {
+                modelThread = true;
+            } else if (arg.equals("--autosave-binary")) {
+                binaryAutosave = true;
+            } else if (arg.equals("--ws-no-compression")) {
+                wsPolicy = wsPolicy.withCompress(false);
+            } else if (arg.startsWith("--ws-compression-threshold=")) {
+                wsPolicy = wsPolicy.withCompressThreshold(Integer.parseInt(arg.split("=", 2)[1]));
+            } else if (arg.startsWith("--ws-idle-timeout=")) {
+                wsPolicy = wsPolicy.withIdleTimeoutSeconds(Integer.parseInt(arg.split("=", 2)[1]));
+            } else if (arg.startsWith("--ws-input-buffer=")) {
+                wsPolicy = wsPolicy.withInputBufferSize(Integer.parseInt(arg.split("=", 2)[1]));
+            } else if (arg.startsWith("--ws-max-message=")) {
+                wsPolicy = wsPolicy.withMaxMessageSize(Integer.parseInt(arg.split("=", 2)[1]));
             }
         }
 
@@ -176,9 +200,11 @@ public class Main extends Logger {
                      Files.newDirectoryStream(Paths.get(".").toAbsolutePath().normalize().getParent())) {
                 for (Path dir : stream) {
                     if (Files.isDirectory(dir)) {
-                        Path autosave = dir.resolve(Paths.get("config", "autosave", "scoreboard-0-secs-ago.json"));
-                        if (Files.exists(autosave) && Files.getLastModifiedTime(autosave).toMillis() > newestAutosave) {
-                            newestAutosave = Files.getLastModifiedTime(autosave).toMillis();
+                        // The instance may have written its autosaves as JSON or binary.
+                        File autosave =
+                            AutoSaveJSONState.findFile(0, dir.resolve(Paths.get("config", "autosave")).toFile());
+                        if (autosave != null && autosave.lastModified() > newestAutosave) {
+                            newestAutosave = autosave.lastModified();
                             sourcePath = dir;
                         }
                     }
@@ -206,6 +232,10 @@ public class Main extends Logger {
         try {
             copyFiles(sourcePath, targetPath, Paths.get("config", "autosave"), ".json",
                       StandardCopyOption.REPLACE_EXISTING);
+            copyFiles(sourcePath, targetPath, Paths.get("config", "autosave"), ".jsonl",
+                      StandardCopyOption.REPLACE_EXISTING);
+            copyFiles(sourcePath, targetPath, Paths.get("config", "autosave"), ".bin",
+                      StandardCopyOption.REPLACE_EXISTING);
             copyFiles(sourcePath, targetPath, Paths.get(""), ".xlsx");
             copyDir(sourcePath, targetPath, Paths.get("config", "penalties"));
             copyDir(sourcePath, targetPath, Paths.get("html", "game-data"));
@@ -249,6 +279,11 @@ public class Main extends Logger {
 
     private String importPath = null;
 
+    private boolean modelThread = false;
+    private boolean binaryAutosave = false;
+
+    private WS.Policy wsPolicy = new WS.Policy();
+
     private File logFile = new File(BasePath.get(), "logs/crg.log");
 
     private static ScoreBoard scoreBoard;
@@ -1,12 +1,17 @@
 package com.carolinarollergirls.scoreboard.core;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.carolinarollergirls.scoreboard.core.admin.ClientsImpl;
 import com.carolinarollergirls.scoreboard.core.admin.MediaImpl;
 import com.carolinarollergirls.scoreboard.core.admin.SettingsImpl;
 import com.carolinarollergirls.scoreboard.core.current.CurrentGameImpl;
+import com.carolinarollergirls.scoreboard.core.game.ArchivedGameImpl;
 import com.carolinarollergirls.scoreboard.core.game.GameImpl;
+import com.carolinarollergirls.scoreboard.core.interfaces.ArchivedGame;
 import com.carolinarollergirls.scoreboard.core.interfaces.Clients;
 import com.carolinarollergirls.scoreboard.core.interfaces.CurrentGame;
 import com.carolinarollergirls.scoreboard.core.interfaces.Game;
@@ -23,7 +28,11 @@ import com.carolinarollergirls.scoreboard.event.Child;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProviderImpl;
 import com.carolinarollergirls.scoreboard.event.ValueWithId;
+import com.carolinarollergirls.scoreboard.json.JSONStateFile;
 import com.carolinarollergirls.scoreboard.json.JSONStateManager;
+import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONSetter;
+import com.carolinarollergirls.scoreboard.utils.Logger;
+import com.carolinarollergirls.scoreboard.utils.ScheduledTask;
 import com.carolinarollergirls.scoreboard.utils.StatsbookExporter;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
 import com.carolinarollergirls.scoreboard.utils.Version;
@@ -64,7 +73,12 @@ public class ScoreBoardImpl extends ScoreBoardEventProviderImpl<ScoreBoard> impl
     public ScoreBoardEventProvider create(Child<? extends ScoreBoardEventProvider> prop, String id, Source source) {
         synchronized (coreLock) {
             if (prop == PREPARED_TEAM) { return new PreparedTeamImpl(this, id); }
-            if (prop == GAME) { return new GameImpl(this, id); }
+            if (prop == GAME) {
+                // Sets to an archived game go to the game as it was.
+                Game g = restoreGame(id);
+                return g == null ? new GameImpl(this, id) : g;
+            }
+            if (prop == ARCHIVED_GAME) { return new ArchivedGameImpl(this, id); }
             return null;
         }
     }
@@ -102,7 +116,40 @@ public class ScoreBoardImpl extends ScoreBoardEventProviderImpl<ScoreBoard> impl
 
     @Override
     public Game getGame(String id) {
-        return get(GAME, id);
+        synchronized (coreLock) {
+            Game g = get(GAME, id);
+            return g == null ? restoreGame(id) : g;
+        }
+    }
+
+    // Loads an archived game back from its snapshot. Returns null if there is none.
+    private Game restoreGame(String id) {
+        ArchivedGame archived = get(ARCHIVED_GAME, id);
+        if (archived == null) { return null; }
+        JSONStateFile file;
+        try {
+            file = new JSONStateFile(archived.getFile());
+        } catch (IOException e) {
+            // Keep the entry, so the game isn't lost if the file comes back.
+            Logger.printMessage("Error restoring archived game " + id + ": " + e.getMessage());
+            return null;
+        }
+        runInBatch(() -> {
+            int aliasMark = registry.getAliasMark();
+            archived.delete();
+            try {
+                ScoreBoardJSONSetter.set(this, file, Source.JSON);
+            } catch (IOException e) {
+                Logger.printMessage("Error restoring archived game " + id + ": " + e.getMessage());
+            }
+            // The snapshot's ids are only needed while it is read and would
+            // keep the game in memory after it is archived again. Aliases of
+            // imports still running are left alone.
+            registry.removeAliasesSince(aliasMark);
+        });
+        Game g = get(GAME, id);
+        if (g != null) { g.postAutosaveUpdate(); }
+        return g;
     }
 
     @Override
@@ -139,6 +186,25 @@ public class ScoreBoardImpl extends ScoreBoardEventProviderImpl<ScoreBoard> impl
         return initialLoadDone;
     }
 
+    @Override
+    public ScheduledTask schedule(Runnable task, long delayMs) {
+        return ScheduledTask.schedule(scheduler, task, delayMs);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor s = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "ScoreBoard timers");
+            t.setDaemon(true);
+            return t;
+        });
+        s.setRemoveOnCancelPolicy(true);
+        // Most of the time nothing is scheduled, so don't keep the thread around.
+        s.setKeepAliveTime(10, TimeUnit.SECONDS);
+        s.allowCoreThreadTimeOut(true);
+        return s;
+    }
+
     private JSONStateManager jsm = new JSONStateManager();
     private boolean initialLoadDone = false;
+    private final ScheduledThreadPoolExecutor scheduler = createScheduler();
 }
@@ -16,6 +16,7 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.List;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.Media;
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
@@ -66,26 +67,25 @@ public class MediaImpl extends ScoreBoardEventProviderImpl<Media> implements Med
                     String format = dir.getName(dir.getNameCount() - 2).toString();
                     String type = dir.getName(dir.getNameCount() - 1).toString();
 
-                    synchronized (coreLock) {
-                        try {
-                            requestBatchStart();
-
-                            for (WatchEvent<?> event : key.pollEvents()) {
-                                WatchEvent.Kind<?> kind = event.kind();
-                                if (kind == OVERFLOW) {
-                                    mediaTypeRefresh(format, type);
-                                    continue;
-                                }
-                                Path filename = (Path) event.context();
-                                if (kind == ENTRY_CREATE) {
-                                    mediaFileCreated(format, type, filename.toString());
-                                } else if (kind == ENTRY_DELETE) {
-                                    mediaFileDeleted(format, type, filename.toString());
-                                }
-                            }
-                            key.reset();
-                        } finally { requestBatchEnd(); }
+                    List<WatchEvent<?>> events = key.pollEvents();
+                    key.reset();
+                    boolean overflow = false;
+                    for (WatchEvent<?> event : events) { overflow |= event.kind() == OVERFLOW; }
+                    if (overflow) {
+                        mediaTypeRefresh(format, type);
+                        continue;
                     }
+                    runInBatch(() -> {
+                        for (WatchEvent<?> event : events) {
+                            WatchEvent.Kind<?> kind = event.kind();
+                            Path filename = (Path) event.context();
+                            if (kind == ENTRY_CREATE) {
+                                mediaFileCreated(format, type, filename.toString());
+                            } else if (kind == ENTRY_DELETE) {
+                                mediaFileDeleted(format, type, filename.toString());
+                            }
+                        }
+                    });
                 }
             }
         };
@@ -93,7 +93,7 @@ public class MediaImpl extends ScoreBoardEventProviderImpl<Media> implements Med
     }
 
     private void mediaTypeRefresh(String format, String type) {
-        synchronized (coreLock) {
+        runInBatch(() -> {
             Path p = path.resolve(format).resolve(type);
             Collection<MediaFile> files = getFormat(format).getType(type).getAll(MediaType.FILE);
             // Remove any files that aren't there any more.
@@ -102,7 +102,7 @@ public class MediaImpl extends ScoreBoardEventProviderImpl<Media> implements Med
             }
             // Add any files that are there.
             for (File f : p.toFile().listFiles()) { mediaFileCreated(format, type, f.getName()); }
-        }
+        });
     }
 
     @Override
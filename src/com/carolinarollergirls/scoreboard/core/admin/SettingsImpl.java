@@ -50,6 +50,7 @@ public class SettingsImpl extends ScoreBoardEventProviderImpl<Settings> implemen
         set(Clock.SETTING_SYNC, "true");
         set(Team.SETTING_DISPLAY_NAME, Team.OPTION_LEAGUE_NAME);
         set(Game.SETTING_DEFAULT_NAME_FORMAT, "%d %G %1 vs. %2 (%s: %S)");
+        set(Game.SETTING_ARCHIVE_DELAY, "");
         set("ScoreBoard.Intermission.PreGame", "Time To Derby");
         set("ScoreBoard.Intermission.Intermission", "Intermission");
         set("ScoreBoard.Intermission.Unofficial", "Unofficial Score");
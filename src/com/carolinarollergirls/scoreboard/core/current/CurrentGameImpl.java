@@ -62,17 +62,32 @@ public class CurrentGameImpl extends MirrorScoreBoardEventProviderImpl<Game, Cur
         return "";
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T valueFromString(Value<T> prop, String sValue) {
+        if (prop == GAME && sValue != null && !"".equals(sValue) && getElement(Game.class, sValue) == null) {
+            // an archived game has to be loaded to become current
+            return (T) scoreBoard.getGame(sValue);
+        }
+        return super.valueFromString(prop, sValue);
+    }
+
     @Override
     protected Object computeValue(Value<?> prop, Object value, Object last, Source source, Flag flag) {
         if (prop == GAME && (!source.isFile() || value != null)) {
-            if (last != null) { elements.get(CurrentGame.class).remove(((Game) last).getId()); }
+            if (last != null && value != last) {
+                registry.remove(CurrentGame.class, ((Game) last).getId(), this);
+                // mirrors are rebuilt if the game becomes current again, so they
+                // must not keep it in memory once it is archived
+                forgetMirrors(CurrentGame.class);
+            }
             if (value == null && last != null) {
                 // having no current game will brake lots of things, so inhibit that
                 value = new GameImpl(scoreBoard, UUID.randomUUID().toString());
                 scoreBoard.add(ScoreBoard.GAME, (Game) value);
             }
             sourceElement = (Game) value;
-            if (value != null) { elements.get(CurrentGame.class).put(((Game) value).getId(), this); }
+            if (value != null) { registry.put(CurrentGame.class, ((Game) value).getId(), this); }
         } else if (source.isFile()) {
             return last;
         }
@@ -0,0 +1,34 @@
+package com.carolinarollergirls.scoreboard.core.game;
+
+import java.io.File;
+
+import com.carolinarollergirls.scoreboard.core.interfaces.ArchivedGame;
+import com.carolinarollergirls.scoreboard.core.interfaces.Game;
+import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
+import com.carolinarollergirls.scoreboard.core.interfaces.Team;
+import com.carolinarollergirls.scoreboard.event.Property;
+import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProviderImpl;
+import com.carolinarollergirls.scoreboard.json.JSONStateSnapshotter;
+
+public class ArchivedGameImpl extends ScoreBoardEventProviderImpl<ArchivedGame> implements ArchivedGame {
+    public ArchivedGameImpl(ScoreBoard sb, String id) {
+        super(sb, id, ScoreBoard.ARCHIVED_GAME);
+        addProperties(props);
+        for (Property<?> prop : props) { addWriteProtectionOverride(prop, Source.NON_WS); }
+    }
+    public ArchivedGameImpl(Game g) {
+        this(g.getScoreBoard(), g.getId());
+        set(NAME, g.get(Game.NAME));
+        set(STATE, g.get(Game.STATE));
+        set(FILENAME, g.getFilename());
+        set(TEAM_1_NAME, g.getTeam(Team.ID_1).get(Team.DISPLAY_NAME));
+        set(TEAM_2_NAME, g.getTeam(Team.ID_2).get(Team.DISPLAY_NAME));
+        set(TEAM_1_SCORE, g.getTeam(Team.ID_1).get(Team.SCORE));
+        set(TEAM_2_SCORE, g.getTeam(Team.ID_2).get(Team.SCORE));
+    }
+
+    @Override
+    public File getFile() {
+        return JSONStateSnapshotter.getFile(get(FILENAME));
+    }
+}
@@ -2,10 +2,13 @@ package com.carolinarollergirls.scoreboard.core.game;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.Clock;
 import com.carolinarollergirls.scoreboard.core.interfaces.Game;
 import com.carolinarollergirls.scoreboard.core.interfaces.Period;
+import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
 import com.carolinarollergirls.scoreboard.event.Command;
 import com.carolinarollergirls.scoreboard.event.ConditionalScoreBoardListener;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEvent;
@@ -352,6 +355,9 @@ public class ClockImpl extends ScoreBoardEventProviderImpl<Clock> implements Clo
 
         public void addClock(ClockImpl c, boolean quickAdd) {
             synchronized (coreLock) {
+                // Nobody has been waking us up while no clock was running,
+                // so catch up first or the new clock would get all the missed ticks.
+                if (clocks.isEmpty()) { scoreBoardClock.getCurrentTime(); }
                 if (c.isSyncTime() && !quickAdd && !clocks.isEmpty()) {
                     // This syncs all the clocks to change second at the same time
                     // with respect to the running clocks.
@@ -370,6 +376,7 @@ public class ClockImpl extends ScoreBoardEventProviderImpl<Clock> implements Clo
                     c.lastTime = currentTime;
                 }
                 clocks.add(c);
+                scoreBoardClock.requestUpdate(nextTickTime());
             }
         }
 
@@ -378,38 +385,51 @@ public class ClockImpl extends ScoreBoardEventProviderImpl<Clock> implements Clo
         }
 
         private void tick() {
-            Iterator<ClockImpl> i;
             @SuppressWarnings("hiding")
             ArrayList<ClockImpl> clocks;
             synchronized (coreLock) {
                 currentTime += update_interval;
                 clocks = new ArrayList<>(this.clocks);
             }
-            ClockImpl clock;
-            i = clocks.iterator();
-            while (i.hasNext()) {
-                clock = i.next();
-                clock.requestBatchStart();
-            }
-            i = clocks.iterator();
-            while (i.hasNext()) {
-                clock = i.next();
-                clock.timerTick(update_interval);
-            }
-            i = clocks.iterator();
-            while (i.hasNext()) {
-                clock = i.next();
-                clock.requestBatchEnd();
-            }
+            for (ClockImpl clock : clocks) { clock.timerTick(update_interval); }
         }
 
         @Override
         public void updateTime(long time) {
             long curSystemTime = time;
             long curTicks = (curSystemTime - startSystemTime) / update_interval;
-            while (curTicks > ticks) {
-                ticks++;
-                tick();
+            if (curTicks > ticks) {
+                // Run all due ticks of all clocks in a single batch per scoreboard, so
+                // listeners like ScoreBoardJSONListener publish one update for all of them.
+                Set<ScoreBoard> roots = new LinkedHashSet<>();
+                synchronized (coreLock) {
+                    for (ClockImpl c : clocks) { roots.add(c.getScoreBoard()); }
+                }
+                if (roots.isEmpty()) {
+                    // Nothing is running, so just skip ahead.
+                    currentTime += (curTicks - ticks) * update_interval;
+                    ticks = curTicks;
+                } else {
+                    runInBatches(roots.iterator(), () -> {
+                        while (curTicks > ticks) {
+                            ticks++;
+                            tick();
+                        }
+                    });
+                }
+            }
+            synchronized (coreLock) {
+                if (!clocks.isEmpty()) { scoreBoardClock.requestUpdate(nextTickTime()); }
+            }
+        }
+
+        private long nextTickTime() { return startSystemTime + (ticks + 1) * update_interval; }
+
+        private void runInBatches(Iterator<ScoreBoard> roots, Runnable r) {
+            if (roots.hasNext()) {
+                roots.next().runInBatch(() -> runInBatches(roots, r));
+            } else {
+                r.run();
             }
         }
 
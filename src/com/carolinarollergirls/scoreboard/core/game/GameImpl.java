@@ -14,6 +14,7 @@ import java.util.UUID;
 import com.fasterxml.jackson.jr.ob.JSON;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.Clock;
+import com.carolinarollergirls.scoreboard.core.interfaces.CurrentGame;
 import com.carolinarollergirls.scoreboard.core.interfaces.Expulsion;
 import com.carolinarollergirls.scoreboard.core.interfaces.Game;
 import com.carolinarollergirls.scoreboard.core.interfaces.Jam;
@@ -45,6 +46,7 @@ import com.carolinarollergirls.scoreboard.rules.Rule;
 import com.carolinarollergirls.scoreboard.rules.RuleDefinition;
 import com.carolinarollergirls.scoreboard.utils.BasePath;
 import com.carolinarollergirls.scoreboard.utils.ClockConversion;
+import com.carolinarollergirls.scoreboard.utils.ScheduledTask;
 import com.carolinarollergirls.scoreboard.utils.ScoreBoardClock;
 import com.carolinarollergirls.scoreboard.utils.StatsbookExporter;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
@@ -186,7 +188,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
                 }));
 
         // handle changes to the ruleset (if following a preset ruleset)
-        scoreBoard.getRulesets().addScoreBoardListener(
+        listenTo(scoreBoard.getRulesets(),
                 new ConditionalScoreBoardListener<>(Ruleset.class, Ruleset.RULE, new ScoreBoardListener() {
                     @Override
                     public void scoreBoardChange(ScoreBoardEvent<?> event) {
@@ -195,7 +197,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
                 }));
 
         // handle file updates
-        scoreBoard.getMedia().getFormat("game-data").getType("json").addScoreBoardListener(
+        listenTo(scoreBoard.getMedia().getFormat("game-data").getType("json"),
                 new ConditionalScoreBoardListener<>(MediaType.class, MediaType.FILE, new ScoreBoardListener() {
                     @Override
                     public void scoreBoardChange(ScoreBoardEvent<?> event) {
@@ -204,7 +206,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
                         }
                     }
                 }));
-        scoreBoard.getMedia().getFormat("game-data").getType("xlsx").addScoreBoardListener(
+        listenTo(scoreBoard.getMedia().getFormat("game-data").getType("xlsx"),
                 new ConditionalScoreBoardListener<>(MediaType.class, MediaType.FILE, new ScoreBoardListener() {
                     @Override
                     public void scoreBoardChange(ScoreBoardEvent<?> event) {
@@ -213,6 +215,21 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
                         }
                     }
                 }));
+
+        // a finished game may be archived once another game is current
+        listenTo(scoreBoard.getCurrentGame(), new ConditionalScoreBoardListener<>(scoreBoard.getCurrentGame(),
+                CurrentGame.GAME, new ScoreBoardListener() {
+                    @Override
+                    public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                        scheduleArchive();
+                    }
+                }));
+    }
+
+    // Listeners on elements outside the game are removed when it is deleted.
+    private void listenTo(ScoreBoardEventProvider source, ScoreBoardListener listener) {
+        source.addScoreBoardListener(listener);
+        providers.put(listener, source);
     }
 
     @Override
@@ -313,6 +330,10 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
                 if (lc.isCountDirectionDown()) { lc.setMaximumTime(getLong(Rule.LINEUP_DURATION)); }
             }
         } else if (prop == UPCOMING_JAM) {
+            if (source.isFile() && last != null && ((Jam) last).getParent() == this) {
+                // replaced by the upcoming jam of a loaded game, so it won't be moved to a period
+                ((Jam) last).delete(Source.UNLINK);
+            }
             removeAll(Period.JAM);
             add(Period.JAM, (Jam) value);
         } else if (prop == CURRENT_TIMEOUT && value == null) {
@@ -355,6 +376,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
             }
             jsonSnapshotter.writeOnNextUpdate();
         }
+        if (prop == STATE) { scheduleArchive(); }
     }
 
     @Override
@@ -416,8 +438,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
             if (prop == NSO) { return new OfficialImpl(this, id, NSO); }
             if (prop == REF) { return new OfficialImpl(this, id, REF); }
             if (prop == EXPULSION && source.isFile()) {
-                if (elements.get(Penalty.class) == null) { return null; }
-                Penalty p = (Penalty) elements.get(Penalty.class).get(id);
+                Penalty p = getElement(Penalty.class, id);
                 if (p != null) {
                     Expulsion e = get(EXPULSION, p.getId());
                     return e == null ? new ExpulsionImpl(this, p) : e;
@@ -432,9 +453,61 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
         synchronized (coreLock) {
             // Button may have a label from autosave but undo will not work after restart
             setLabel(Button.UNDO, ACTION_NONE);
+            scheduleArchive();
         }
     }
 
+    @Override
+    public void addViewer() {
+        synchronized (coreLock) {
+            viewers++;
+            archiveTask.cancel();
+        }
+    }
+    @Override
+    public void removeViewer() {
+        synchronized (coreLock) {
+            if (viewers > 0) { viewers--; }
+            scheduleArchive();
+        }
+    }
+
+    private boolean isArchivable() {
+        return get(STATE) == State.FINISHED && viewers == 0 && !get(UPDATE_IN_PROGRESS)
+                && scoreBoard.getCurrentGame().get(CurrentGame.GAME) != this
+                && scoreBoard.get(ScoreBoard.GAME, getId()) == this;
+    }
+
+    private void scheduleArchive() { scheduleArchive(0); }
+    private void scheduleArchive(long minDelay) {
+        archiveTask.cancel();
+        Long delay = ClockConversion.fromHumanReadable(getSetting(SETTING_ARCHIVE_DELAY));
+        if (delay == null || !isArchivable()) { return; }
+        archiveTask = scoreBoard.schedule(() -> scoreBoard.runInBatch(() -> {
+            if (!archive()) { scheduleArchive(ARCHIVE_RETRY_MS); }
+        }), Math.max(delay, minDelay));
+    }
+
+    /**
+     * Replaces the game by an ArchivedGame once its snapshot is written, so
+     * it takes no memory until it's needed again. Returns false if the game
+     * should stay for now.
+     */
+    private boolean archive() {
+        if (!isArchivable()) { return true; }
+        for (Clock c : getAll(CLOCK)) {
+            if (c.isRunning()) { return false; }
+        }
+        for (Team t : getAll(TEAM)) {
+            if (((TeamImpl) t).isTripAdvancementPending()) { return false; }
+        }
+        if (!jsonSnapshotter.writeNow()) { return false; }
+        jsonSnapshotter.close();
+        scoreBoard.add(ScoreBoard.ARCHIVED_GAME, new ArchivedGameImpl(this));
+        discard();
+        return true;
+    }
+
     @Override
     public boolean isInPeriod() { return get(IN_PERIOD); }
     @Override
@@ -972,6 +1045,7 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
         }
         set(UPDATE_IN_PROGRESS, false);
         statsbookExporter = null;
+        scheduleArchive();
     }
 
     public static void setQuickClockThreshold(long threshold) { quickClockThreshold = threshold; } // for unit tests
@@ -987,10 +1061,14 @@ public class GameImpl extends ScoreBoardEventProviderImpl<Game> implements Game
     protected Button lastButton = Button.UNDO;
     protected long lastButtonTime = ScoreBoardClock.getInstance().getCurrentTime();
     protected static long quickClockThreshold = 1000; // ms
+    protected static final long ARCHIVE_RETRY_MS = 60000;
 
     protected StatsbookExporter statsbookExporter;
     protected JSONStateSnapshotter jsonSnapshotter;
 
+    protected int viewers = 0;
+    protected ScheduledTask archiveTask = ScheduledTask.NONE;
+
     public static class GameSnapshot {
         private GameSnapshot(GameImpl g, String type) {
             snapshotTime = ScoreBoardClock.getInstance().getCurrentTime();
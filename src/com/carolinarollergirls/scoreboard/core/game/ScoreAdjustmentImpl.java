@@ -1,8 +1,5 @@
 package com.carolinarollergirls.scoreboard.core.game;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import com.carolinarollergirls.scoreboard.core.interfaces.Game;
 import com.carolinarollergirls.scoreboard.core.interfaces.Jam;
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreAdjustment;
@@ -11,6 +8,7 @@ import com.carolinarollergirls.scoreboard.core.interfaces.Team;
 import com.carolinarollergirls.scoreboard.event.Command;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProviderImpl;
 import com.carolinarollergirls.scoreboard.event.Value;
+import com.carolinarollergirls.scoreboard.utils.ScheduledTask;
 
 public class ScoreAdjustmentImpl extends ScoreBoardEventProviderImpl<ScoreAdjustment> implements ScoreAdjustment {
     public ScoreAdjustmentImpl(Team t, String id) {
@@ -43,15 +41,8 @@ public class ScoreAdjustmentImpl extends ScoreBoardEventProviderImpl<ScoreAdjust
             if (((Integer) value) == 0) {
                 delete(source);
             } else {
-                closeTimerTask.cancel();
-                closeTimer.purge();
-                closeTimerTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        set(OPEN, false);
-                    }
-                };
-                closeTimer.schedule(closeTimerTask, 4000);
+                closeTask.cancel();
+                closeTask = scoreBoard.schedule(() -> runInBatch(() -> set(OPEN, false)), 4000);
             }
         }
     }
@@ -93,10 +84,5 @@ public class ScoreAdjustmentImpl extends ScoreBoardEventProviderImpl<ScoreAdjust
 
     private Game game;
 
-    private Timer closeTimer = new Timer();
-    private TimerTask closeTimerTask = new TimerTask() {
-        @Override
-        public void run() {} // dummy, so the variable is not
-                             // null at the first score entry
-    };
+    private ScheduledTask closeTask = ScheduledTask.NONE;
 }
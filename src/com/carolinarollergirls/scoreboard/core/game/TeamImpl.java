@@ -3,8 +3,6 @@ package com.carolinarollergirls.scoreboard.core.game;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.BoxTrip;
@@ -37,6 +35,7 @@ import com.carolinarollergirls.scoreboard.event.ScoreBoardListener;
 import com.carolinarollergirls.scoreboard.event.Value;
 import com.carolinarollergirls.scoreboard.event.ValueWithId;
 import com.carolinarollergirls.scoreboard.rules.Rule;
+import com.carolinarollergirls.scoreboard.utils.ScheduledTask;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
 
 public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team {
@@ -164,7 +163,7 @@ public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team
             return t.isRunning() && this == t.getOwner() && t.isReview();
         }
         if (prop == TRIP_SCORE && source != Source.COPY) {
-            tripScoreTimerTask.cancel();
+            tripScoreTask.cancel();
             if (((Integer) value > 0 || flag != Flag.CHANGE) && getCurrentTrip().getNumber() == 1 &&
                 !game.isInOvertime() && !game.isInSuddenScoring() && source == Source.WS) {
                 // If points arrive during an initial trip and we are not in overtime, assign
@@ -176,17 +175,12 @@ public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team
             if (game.isInJam() && ((Integer) value > 0 || ((Integer) last == 0 && flag != Flag.CHANGE))) {
                 // we are during a jam and either points have been entered or the trip score has
                 // been explicitly set to 0 - set a timer to advance the trip
-                tripScoreTimer.purge();
                 tripScoreJamTime = getCurrentTrip().get(ScoringTrip.JAM_CLOCK_END);
                 if (tripScoreJamTime == 0L) { tripScoreJamTime = game.getClock(Clock.ID_JAM).getTimeElapsed(); }
-                tripScoreTimerTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        execute(ADD_TRIP);
-                        getCurrentTrip().getPrevious().set(ScoringTrip.JAM_CLOCK_END, tripScoreJamTime);
-                    }
-                };
-                tripScoreTimer.schedule(tripScoreTimerTask, 4000);
+                tripScoreTask = scoreBoard.schedule(() -> runInBatch(() -> {
+                    execute(ADD_TRIP);
+                    getCurrentTrip().getPrevious().set(ScoringTrip.JAM_CLOCK_END, tripScoreJamTime);
+                }), 4000);
             }
         }
         if (prop == SCORE) {
@@ -274,11 +268,11 @@ public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team
     @Override
     public void execute(Command prop, Source source) {
         if (prop == ADD_TRIP) {
-            tripScoreTimerTask.cancel();
+            tripScoreTask.cancel();
             getRunningOrEndedTeamJam().addScoringTrip();
             if (!isLead() && !getOtherTeam().isLead()) { set(LOST, true); }
         } else if (prop == REMOVE_TRIP) {
-            if (!tripScoreTimerTask.cancel()) { getRunningOrEndedTeamJam().removeScoringTrip(); }
+            if (!tripScoreTask.cancel()) { getRunningOrEndedTeamJam().removeScoringTrip(); }
         } else if (prop == ADVANCE_FIELDINGS) {
             advanceFieldings();
         } else if (prop == OFFICIAL_REVIEW) {
@@ -642,7 +636,8 @@ public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team
         return get(CURRENT_TRIP);
     }
 
-    public boolean cancelTripAdvancement() { return tripScoreTimerTask.cancel(); }
+    public boolean cancelTripAdvancement() { return tripScoreTask.cancel(); }
+    public boolean isTripAdvancementPending() { return tripScoreTask.isPending(); }
 
     @Override
     public boolean inTimeout() {
@@ -906,12 +901,7 @@ public class TeamImpl extends ScoreBoardEventProviderImpl<Team> implements Team
 
     FloorPosition nextReplacedBlocker = FloorPosition.PIVOT;
 
-    private Timer tripScoreTimer = new Timer();
-    private TimerTask tripScoreTimerTask = new TimerTask() {
-        @Override
-        public void run() {} // dummy, so the variable is not
-                             // null at the first score entry
-    };
+    private ScheduledTask tripScoreTask = ScheduledTask.NONE;
     private long tripScoreJamTime; // store the jam clock when starting the timer so we can set the correct value
                                    // when advancing the trip
     private Game game;
@@ -0,0 +1,28 @@
+package com.carolinarollergirls.scoreboard.core.interfaces;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import com.carolinarollergirls.scoreboard.event.Property;
+import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider;
+import com.carolinarollergirls.scoreboard.event.Value;
+
+/**
+ * What is kept of a finished game that has been archived to its JSON
+ * snapshot. ScoreBoard.getGame() brings the full game back.
+ */
+public interface ArchivedGame extends ScoreBoardEventProvider {
+    // The snapshot the game is archived to.
+    public File getFile();
+
+    public static Collection<Property<?>> props = new ArrayList<>();
+
+    public static final Value<String> NAME = new Value<>(String.class, "Name", "", props);
+    public static final Value<Game.State> STATE = new Value<>(Game.State.class, "State", Game.State.FINISHED, props);
+    public static final Value<String> FILENAME = new Value<>(String.class, "Filename", "", props);
+    public static final Value<String> TEAM_1_NAME = new Value<>(String.class, "Team1Name", "", props);
+    public static final Value<String> TEAM_2_NAME = new Value<>(String.class, "Team2Name", "", props);
+    public static final Value<Integer> TEAM_1_SCORE = new Value<>(Integer.class, "Team1Score", 0, props);
+    public static final Value<Integer> TEAM_2_SCORE = new Value<>(Integer.class, "Team2Score", 0, props);
+}
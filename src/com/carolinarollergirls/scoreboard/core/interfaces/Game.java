@@ -79,6 +79,10 @@ public interface Game extends ScoreBoardEventProvider {
 
     public void exportDone(boolean success);
 
+    // Clients that have the game open keep it from being archived.
+    public void addViewer();
+    public void removeViewer();
+
     public enum State {
         PREPARED("Prepared"),
         RUNNING("Running"),
@@ -161,6 +165,8 @@ public interface Game extends ScoreBoardEventProvider {
     public static final Command EXPORT = new Command("Export", props);
 
     public static final String SETTING_DEFAULT_NAME_FORMAT = "ScoreBoard.Game.DefaultNameFormat";
+    // How long a finished game is kept in memory once it's no longer current. Empty to never archive.
+    public static final String SETTING_ARCHIVE_DELAY = "ScoreBoard.Game.ArchiveDelay";
 
     public static final String INFO_VENUE = "Venue";
     public static final String INFO_CITY = "City";
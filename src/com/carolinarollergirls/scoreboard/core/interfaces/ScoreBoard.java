@@ -8,6 +8,7 @@ import com.carolinarollergirls.scoreboard.event.Property;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider;
 import com.carolinarollergirls.scoreboard.event.Value;
 import com.carolinarollergirls.scoreboard.json.JSONStateManager;
+import com.carolinarollergirls.scoreboard.utils.ScheduledTask;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
 
 public interface ScoreBoard extends ScoreBoardEventProvider {
@@ -25,6 +26,10 @@ public interface ScoreBoard extends ScoreBoardEventProvider {
 
     public Clients getClients();
 
+    /**
+     * The game with the given id. An archived game is loaded back from its
+     * snapshot first.
+     */
     public Game getGame(String id);
 
     public PreparedTeam getPreparedTeam(String id);
@@ -35,6 +40,12 @@ public interface ScoreBoard extends ScoreBoardEventProvider {
 
     public boolean isInitialLoadDone();
 
+    /**
+     * Runs task once after delayMs on a timer thread shared by the whole
+     * scoreboard. The task has to take care of locking itself.
+     */
+    public ScheduledTask schedule(Runnable task, long delayMs);
+
     public static Collection<Property<?>> props = new ArrayList<>();
 
     public static final Value<Boolean> BLANK_STATSBOOK_FOUND =
@@ -47,6 +58,7 @@ public interface ScoreBoard extends ScoreBoardEventProvider {
     public static final Child<Clients> CLIENTS = new Child<>(Clients.class, "Clients", props);
     public static final Child<Rulesets> RULESETS = new Child<>(Rulesets.class, "Rulesets", props);
     public static final Child<Game> GAME = new Child<>(Game.class, "Game", props);
+    public static final Child<ArchivedGame> ARCHIVED_GAME = new Child<>(ArchivedGame.class, "ArchivedGame", props);
     public static final Child<PreparedTeam> PREPARED_TEAM = new Child<>(PreparedTeam.class, "PreparedTeam", props);
     public static final Child<CurrentGame> CURRENT_GAME = new Child<>(CurrentGame.class, "CurrentGame", props);
 
@@ -57,6 +57,9 @@ public class ConditionalScoreBoardListener<T> implements ScoreBoardListener {
         return sbL;
     }
 
+    public ScoreBoardCondition<T> getCondition() { return condition; }
+    // Providers index their listeners by the property of the condition, so it
+    // must not change while the listener is registered.
     public void setCondition(ScoreBoardCondition<T> newCondition) { condition = newCondition; }
 
     @SuppressWarnings("unlikely-arg-type")
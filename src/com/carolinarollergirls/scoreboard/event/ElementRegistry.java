@@ -0,0 +1,79 @@
+package com.carolinarollergirls.scoreboard.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The elements below one root by type and id, so references can be resolved.
+ *
+ * Each root (i.e. each ScoreBoard) has its own registry, which its elements
+ * share. Lookups don't take any lock.
+ *
+ * Elements loaded from a file are also registered under the ids they had in
+ * the file, so references in the file find them. These aliases are noted as
+ * they are made, so dropping them only touches the aliases and not every
+ * element.
+ */
+public final class ElementRegistry {
+    public ScoreBoardEventProvider get(Class<?> type, String id) {
+        if (id == null) { return null; }
+        Map<String, ScoreBoardEventProvider> byId = elements.get(type);
+        return byId == null ? null : byId.get(id);
+    }
+
+    public Collection<ScoreBoardEventProvider> getAll(Class<?> type) {
+        Map<String, ScoreBoardEventProvider> byId = elements.get(type);
+        return byId == null ? Collections.emptyList() : byId.values();
+    }
+
+    public void put(Class<?> type, String id, ScoreBoardEventProvider element) { byId(type).put(id, element); }
+
+    // Removes the entry for id if it still refers to element.
+    public void remove(Class<?> type, String id, ScoreBoardEventProvider element) {
+        Map<String, ScoreBoardEventProvider> byId = elements.get(type);
+        if (byId != null && id != null) { byId.remove(id, element); }
+    }
+
+    public synchronized void addAlias(Class<?> type, String alias, ScoreBoardEventProvider element) {
+        put(type, alias, element);
+        aliases.add(new Alias(type, alias, element));
+    }
+
+    // Marks the aliases made so far, see removeAliasesSince().
+    public synchronized int getAliasMark() { return aliases.size(); }
+
+    public synchronized void removeAliases() { removeAliasesSince(0); }
+
+    // Removes the aliases made since mark was taken, and only those.
+    public synchronized void removeAliasesSince(int mark) {
+        List<Alias> dropped = aliases.subList(Math.min(mark, aliases.size()), aliases.size());
+        for (Alias a : dropped) {
+            // The file may have used the same id the element has now.
+            if (!a.id.equals(a.element.getId())) { remove(a.type, a.id, a.element); }
+        }
+        dropped.clear();
+    }
+
+    private Map<String, ScoreBoardEventProvider> byId(Class<?> type) {
+        return elements.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+    }
+
+    private static final class Alias {
+        private Alias(Class<?> type, String id, ScoreBoardEventProvider element) {
+            this.type = type;
+            this.id = id;
+            this.element = element;
+        }
+
+        private final Class<?> type;
+        private final String id;
+        private final ScoreBoardEventProvider element;
+    }
+
+    private final Map<Class<?>, Map<String, ScoreBoardEventProvider>> elements = new ConcurrentHashMap<>();
+    private final List<Alias> aliases = new ArrayList<>();
+}
@@ -188,6 +188,17 @@ public class MirrorScoreBoardEventProviderImpl<M extends ScoreBoardEventProvider
         classMap.put(source, mirror);
     }
 
+    // Forgets all mirrors in this scoreboard other than those of class keep, so they
+    // and the elements they mirror can be collected once they are no longer shown.
+    protected void forgetMirrors(Class<?> keep) {
+        for (Class<? extends MirrorScoreBoardEventProvider<?>> c : classMap.values()) {
+            if (c == keep) { continue; }
+            for (ScoreBoardEventProvider m : registry.getAll(c)) {
+                ((ScoreBoardEventProviderImpl<?>) m).forget();
+            }
+        }
+    }
+
     protected static Map<Class<? extends ScoreBoardEventProvider>, Class<? extends MirrorScoreBoardEventProvider<?>>>
         classMap = new HashMap<>();
     protected static MirrorFactory mirrorFactory;
@@ -0,0 +1,115 @@
+package com.carolinarollergirls.scoreboard.event;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.carolinarollergirls.scoreboard.utils.Logger;
+
+/**
+ * Optional single thread that applies all changes to the model.
+ *
+ * Once started, runInBatch() hands its work to this thread and waits for it,
+ * and clock ticks, timers and media events are queued here. Changes are then
+ * applied one at a time in the order they arrived instead of in whatever order
+ * threads happen to win the core lock. Code outside of the model should read
+ * the JSON state, which is published as an immutable snapshot.
+ *
+ * The core lock is still taken, so code that reads elements directly from
+ * other threads keeps working. It's just no longer contended by writers.
+ */
+public final class ModelThread {
+    private ModelThread() {}
+
+    /**
+     * Must be called before the scoreboard is created.
+     */
+    public static synchronized void start() {
+        if (executor != null) { return; }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ScoreBoard model");
+            t.setDaemon(true);
+            thread = t;
+            return t;
+        });
+        // Create the thread now, so isCurrentThread() works for the first task.
+        try {
+            executor.submit(() -> {}).get();
+        } catch (InterruptedException | ExecutionException e) { throw new RuntimeException(e); }
+    }
+
+    // For unit tests.
+    public static synchronized void stop() {
+        if (executor == null) { return; }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        executor = null;
+        thread = null;
+    }
+
+    public static boolean isStarted() { return executor != null; }
+
+    public static boolean isCurrentThread() { return Thread.currentThread() == thread; }
+
+    /**
+     * Runs r on the model thread and waits for it to finish, rethrowing
+     * anything it throws. Runs r directly if there is no model thread, if we
+     * already are on it or if the caller holds the core lock, as the model
+     * thread would wait for that lock forever.
+     */
+    public static void runAndWait(Runnable r) {
+        ExecutorService e = executor;
+        if (e == null || !shouldHandOff()) {
+            r.run();
+            return;
+        }
+        Future<?> f = e.submit(r);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    f.get();
+                    return;
+                } catch (InterruptedException ie) {
+                    // The change is already queued, so see it through.
+                    interrupted = true;
+                } catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+                    if (cause instanceof Error) { throw (Error) cause; }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    static boolean shouldHandOff() {
+        return executor != null && !isCurrentThread() && !Thread.holdsLock(ScoreBoardEventProviderImpl.getCoreLock());
+    }
+
+    /**
+     * Queues r to run on the model thread without waiting for it. Without a
+     * model thread r is run directly.
+     */
+    public static void post(Runnable r) {
+        ExecutorService e = executor;
+        if (e == null || isCurrentThread()) {
+            r.run();
+        } else {
+            e.execute(() -> {
+                try {
+                    r.run();
+                } catch (RuntimeException ex) { Logger.printStackTrace(ex); }
+            });
+        }
+    }
+
+    private static volatile ExecutorService executor;
+    private static volatile Thread thread;
+}
@@ -55,6 +55,7 @@ public abstract class NumberedScoreBoardEventProviderImpl<C extends NumberedScor
     @SuppressWarnings("unchecked")
     @Override
     protected <T> void _valueChanged(Value<T> prop, T value, T last, Source source, Flag flag) {
+        if (prop == NUMBER) { invalidatePath(); }
         if (prop == NUMBER && last != null) {
             if (flag != Flag.SPECIAL_CASE) {
                 if (hasNext() && getNext().getNumber() == (Integer) last + 1) {
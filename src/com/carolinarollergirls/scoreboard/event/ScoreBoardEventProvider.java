@@ -24,6 +24,17 @@ public interface ScoreBoardEventProvider extends ValueWithId, Comparable<ScoreBo
      * The parent element.
      */
     public ScoreBoardEventProvider getParent();
+    /**
+     * Full path of this element as used in the JSON state, e.g.
+     * ScoreBoard.Game(id).Team(1). The result is cached until the id of this
+     * element or one of its ancestors changes.
+     */
+    public String getPath();
+    /**
+     * Path of the given property on this element, i.e. getPath() + "." +
+     * prop.getJsonName()
+     */
+    public String getPath(Property<?> prop);
     public boolean isAncestorOf(ScoreBoardEventProvider other);
     /**
      * remove all references to this element
@@ -120,6 +131,10 @@ public interface ScoreBoardEventProvider extends ValueWithId, Comparable<ScoreBo
     public void checkProperty(Property<?> prop);
 
     public void cleanupAliases();
+    // Marks the aliases made so far, see cleanupAliasesSince().
+    public int getAliasMark();
+    // Removes only the aliases made since mark was taken.
+    public void cleanupAliasesSince(int mark);
 
     public static final Value<String> ID = new Value<>(String.class, "Id", "", null);
     public static final Value<Boolean> READONLY = new Value<>(Boolean.class, "Readonly", false, null);
@@ -1,11 +1,9 @@
 package com.carolinarollergirls.scoreboard.event;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -24,6 +22,10 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
     @SuppressWarnings("unchecked")
     protected ScoreBoardEventProviderImpl(ScoreBoardEventProvider parent, String id, Child<C> type) {
         this.parent = parent;
+        if (parent instanceof ScoreBoardEventProviderImpl) {
+            registry = ((ScoreBoardEventProviderImpl<?>) parent).registry;
+        }
+        if (registry == null) { registry = new ElementRegistry(); }
         if (parent != null) {
             scoreBoard = parent.getScoreBoard();
         } else if (this instanceof ScoreBoard) {
@@ -37,9 +39,6 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
             providerName = type.getJsonName();
             providerClass = type.getType();
         }
-        if (elements.get(providerClass) == null) {
-            elements.put(providerClass, new HashMap<String, ScoreBoardEventProvider>());
-        }
         addProperties(ID, READONLY);
 
         set(ID, id, Source.OTHER);
@@ -83,6 +82,34 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
     public ScoreBoardEventProvider getParent() {
         return parent;
     }
+    @Override
+    public String getPath() {
+        String parentPath = parent == null ? null : parent.getPath();
+        String result = path;
+        // Comparing by identity suffices, as ancestors hand out their cached string.
+        if (result == null || parentPath != pathParent) {
+            String id = getProviderId();
+            result = (parentPath == null ? "" : parentPath + ".") + providerName +
+                     (id == null || "".equals(id) ? "" : "(" + id + ")");
+            propertyPaths = new HashMap<>();
+            pathParent = parentPath;
+            path = result;
+        }
+        return result;
+    }
+    @Override
+    public String getPath(Property<?> prop) {
+        String base = getPath();
+        Map<Property<?>, String> cache = propertyPaths;
+        String result = cache.get(prop);
+        if (result == null) {
+            result = base + "." + prop.getJsonName();
+            cache.put(prop, result);
+        }
+        return result;
+    }
+    protected void invalidatePath() { path = null; }
+
     @Override
     public boolean isAncestorOf(ScoreBoardEventProvider other) {
         ScoreBoardEventProvider comp = other;
@@ -100,10 +127,8 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
 
     protected void dispatch(ScoreBoardEvent<?> event) {
         // Synchronously send events to listeners.
-        // need to copy the list as some listeners may add or remove listeners
-        synchronized (scoreBoardEventListeners) {
-            for (ScoreBoardListener l : new ArrayList<>(scoreBoardEventListeners)) { l.scoreBoardChange(event); }
-        }
+        // Listeners added or removed while dispatching don't affect this event.
+        scoreBoardEventListeners.dispatch(event);
     }
 
     protected void requestBatchStart() {
@@ -116,6 +141,10 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
 
     @Override
     public void runInBatch(Runnable r) {
+        if (ModelThread.shouldHandOff()) {
+            ModelThread.runAndWait(() -> runInBatch(r));
+            return;
+        }
         synchronized (coreLock) {
             requestBatchStart();
             try {
@@ -126,11 +155,11 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
 
     @Override
     public void addScoreBoardListener(ScoreBoardListener listener) {
-        synchronized (scoreBoardEventListeners) { scoreBoardEventListeners.add(listener); }
+        scoreBoardEventListeners.add(listener);
     }
     @Override
     public void removeScoreBoardListener(ScoreBoardListener listener) {
-        synchronized (scoreBoardEventListeners) { scoreBoardEventListeners.remove(listener); }
+        scoreBoardEventListeners.remove(listener);
     }
 
     @Override
@@ -176,7 +205,45 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
             }
         }
         getParent().remove(ownType, (C) this, Source.UNLINK);
-        elements.get(providerClass).remove(get(ID));
+        registry.remove(providerClass, get(ID), this);
+    }
+
+    /**
+     * Removes this element from its parent and forgets it and all elements
+     * below it, without unlinking them one by one as delete() does. For a
+     * subtree that is dropped as a whole, so nothing in it has to be kept
+     * consistent on the way.
+     */
+    @SuppressWarnings("unchecked")
+    protected void discard() {
+        synchronized (coreLock) {
+            forget();
+            getParent().remove(ownType, (C) this, Source.UNLINK);
+        }
+    }
+    void forget() {
+        for (Property<?> prop : properties.values()) {
+            if (prop instanceof Child) {
+                for (ValueWithId item : getAll((Child<?>) prop)) { forgetOwned(item); }
+            } else if (prop instanceof Value && ScoreBoardEventProvider.class.isAssignableFrom(prop.getType())) {
+                // e.g. the upcoming jam, which is owned by the game without being its child
+                forgetOwned(get((Value<?>) prop));
+            }
+        }
+        for (ScoreBoardListener l : providers.keySet()) {
+            if (l instanceof SelfRemovingScoreBoardListener) {
+                ((SelfRemovingScoreBoardListener) l).delete();
+            } else if (providers.get(l) != null) {
+                providers.get(l).removeScoreBoardListener(l);
+            }
+        }
+        providers.clear();
+        registry.remove(providerClass, get(ID), this);
+    }
+    private void forgetOwned(Object item) {
+        if (item instanceof ScoreBoardEventProviderImpl && ((ScoreBoardEventProvider) item).getParent() == this) {
+            ((ScoreBoardEventProviderImpl<?>) item).forget();
+        }
     }
 
     public void addWriteProtection(Property<?> prop) { addWriteProtectionOverride(prop, null); }
@@ -450,7 +517,7 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
             if (prop == null) { return false; }
             if (prop == ID && source.isFile()) {
                 // register ID as an alias so other elements from file are properly redirected
-                elements.get(providerClass).put((String) value, this);
+                if (value != null && !value.equals(getId())) { registry.addAlias(providerClass, (String) value, this); }
                 return false;
             }
             if (!isWritable(prop, source)) { return false; }
@@ -479,7 +546,10 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
     }
     protected Object computeValue(Value<?> prop, Object value, Object last, Source source, Flag flag) { return value; }
     protected <T> void _valueChanged(Value<T> prop, T value, T last, Source source, Flag flag) {
-        if (prop == ID) { elements.get(providerClass).put((String) value, this); }
+        if (prop == ID) {
+            if (value != null) { registry.put(providerClass, (String) value, this); }
+            invalidatePath();
+        }
         scoreBoardChange(new ScoreBoardEvent<>(this, prop, value, last));
         valueChanged(prop, value, last, source, flag);
     }
@@ -580,8 +650,9 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
         }
     }
     protected <T extends ValueWithId> void _itemAdded(Child<T> prop, T item, Source source) {
-        if (item instanceof ScoreBoardEventProvider && ((ScoreBoardEventProvider) item).getParent() == this) {
-            ((ScoreBoardEventProvider) item).addScoreBoardListener(this);
+        if (item instanceof ScoreBoardEventProviderImpl && ((ScoreBoardEventProvider) item).getParent() == this) {
+            ((ScoreBoardEventProviderImpl<?>) item).invalidatePath();
+            ((ScoreBoardEventProviderImpl<?>) item).scoreBoardEventListeners.attachParent(this);
         }
         if (prop instanceof NumberedChild) {
             int num = ((OrderedScoreBoardEventProvider<?>) item).getNumber();
@@ -634,8 +705,8 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
         }
     }
     protected <T extends ValueWithId> void _itemRemoved(Child<T> prop, T item, Source source) {
-        if (item instanceof ScoreBoardEventProvider) {
-            ((ScoreBoardEventProvider) item).removeScoreBoardListener(this);
+        if (item instanceof ScoreBoardEventProviderImpl) {
+            ((ScoreBoardEventProviderImpl<?>) item).scoreBoardEventListeners.detachParent(this);
         }
         if (prop instanceof NumberedChild) {
             NumberedChild<?> nprop = (NumberedChild<?>) prop;
@@ -696,9 +767,18 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
     @SuppressWarnings("unchecked")
     @Override
     public <T extends ValueWithId> T getElement(Class<T> type, String id) {
-        try {
-            return (T) elements.get(type).get(id);
-        } catch (NullPointerException e) { return null; }
+        return (T) registry.get(type, id);
+    }
+
+    /**
+     * Registers this element in the registry of parent as well, keeping it in
+     * the registries it is already in. For elements that are created before
+     * their parents and shared between them, so each parent's root resolves
+     * them.
+     */
+    protected void registerWith(ScoreBoardEventProvider parent) {
+        if (!(parent instanceof ScoreBoardEventProviderImpl) || get(ID) == null) { return; }
+        ((ScoreBoardEventProviderImpl<?>) parent).registry.put(providerClass, get(ID), this);
     }
 
     @Override
@@ -724,11 +804,15 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
 
     @Override
     public void cleanupAliases() {
-        synchronized (coreLock) {
-            for (Map<String, ScoreBoardEventProvider> list : elements.values()) {
-                list.entrySet().removeIf(o -> (o.getValue() == null || !o.getKey().equals(o.getValue().getId())));
-            }
-        }
+        registry.removeAliases();
+    }
+    @Override
+    public int getAliasMark() {
+        return registry.getAliasMark();
+    }
+    @Override
+    public void cleanupAliasesSince(int mark) {
+        registry.removeAliasesSince(mark);
     }
 
     protected static Object coreLock = new Object();
@@ -741,7 +825,11 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
 
     protected Map<String, Property<?>> properties = new HashMap<>();
 
-    protected Set<ScoreBoardListener> scoreBoardEventListeners = new LinkedHashSet<>();
+    private String path;
+    private String pathParent;
+    private Map<Property<?>, String> propertyPaths = new HashMap<>();
+
+    protected ScoreBoardListenerIndex scoreBoardEventListeners = new ScoreBoardListenerIndex();
     protected Map<ScoreBoardListener, ScoreBoardEventProvider> providers = new HashMap<>();
 
     protected Map<Value<?>, Object> values = new HashMap<>();
@@ -753,8 +841,8 @@ public abstract class ScoreBoardEventProviderImpl<C extends ScoreBoardEventProvi
     protected Map<NumberedChild<?>, Integer> minIds = new HashMap<>();
     protected Map<NumberedChild<?>, Integer> maxIds = new HashMap<>();
 
-    protected static Map<Class<? extends ScoreBoardEventProvider>, Map<String, ScoreBoardEventProvider>> elements =
-        new HashMap<>();
+    // shared by all elements below the same root
+    protected ElementRegistry registry;
 
     public Value<C> PREVIOUS;
     public Value<C> NEXT;
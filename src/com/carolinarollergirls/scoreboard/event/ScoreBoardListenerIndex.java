@@ -0,0 +1,139 @@
+package com.carolinarollergirls.scoreboard.event;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The listeners registered on a ScoreBoardEventProvider.
+ *
+ * ConditionalScoreBoardListeners are indexed by the property of their
+ * condition, so an event is only offered to listeners that can match it plus
+ * the unconditional ones. All lists are copy-on-write arrays, so dispatch reads
+ * a consistent snapshot without copying or locking. Listeners are called in
+ * the order they were registered.
+ *
+ * Events are passed on to the parent the provider is attached to at the point
+ * the parent attached, so ancestors see them in the same order as if they had
+ * registered as listeners. Ancestors without listeners for the property of an
+ * event are skipped over.
+ */
+final class ScoreBoardListenerIndex {
+    synchronized void add(ScoreBoardListener listener) {
+        if (registered.containsKey(listener)) { return; }
+        Entry entry = new Entry(listener, nextSeq++);
+        registered.put(listener, entry);
+        Property<?> prop = indexProperty(listener);
+        if (prop == null) {
+            unconditional = append(unconditional, entry);
+        } else {
+            byProperty.put(prop, append(byProperty.getOrDefault(prop, NONE), entry));
+        }
+    }
+
+    synchronized void remove(ScoreBoardListener listener) {
+        Entry entry = registered.remove(listener);
+        if (entry == null) { return; }
+        if (entry.property == null) {
+            unconditional = without(unconditional, entry);
+        } else {
+            Entry[] remaining = without(byProperty.get(entry.property), entry);
+            if (remaining.length == 0) {
+                byProperty.remove(entry.property);
+            } else {
+                byProperty.put(entry.property, remaining);
+            }
+        }
+    }
+
+    synchronized void attachParent(ScoreBoardEventProviderImpl<?> newParent) {
+        if (parent == newParent) { return; }
+        parentSeq = nextSeq++;
+        parent = newParent;
+    }
+
+    synchronized void detachParent(ScoreBoardEventProviderImpl<?> oldParent) {
+        if (parent == oldParent) { parent = null; }
+    }
+
+    boolean hasListeners(Property<?> prop) { return unconditional.length > 0 || byProperty.containsKey(prop); }
+
+    void dispatch(ScoreBoardEvent<?> event) {
+        ScoreBoardListenerIndex index = this;
+        // Ancestors without matching listeners just pass the event on.
+        while (!index.hasListeners(event.getProperty())) {
+            ScoreBoardEventProviderImpl<?> up = index.parent;
+            if (up == null) { return; }
+            index = up.scoreBoardEventListeners;
+        }
+        index.dispatchHere(event);
+    }
+
+    private void dispatchHere(ScoreBoardEvent<?> event) {
+        Entry[] any = unconditional;
+        Entry[] matching = byProperty.getOrDefault(event.getProperty(), NONE);
+        ScoreBoardEventProviderImpl<?> up = parent;
+        long upSeq = up == null ? Long.MAX_VALUE : parentSeq;
+        // Merge both lists and the parent to retain registration order.
+        int i = 0, j = 0;
+        while (i < any.length || j < matching.length) {
+            long next = j == matching.length || (i < any.length && any[i].seq < matching[j].seq) ? any[i].seq
+                                                                                                   : matching[j].seq;
+            if (upSeq < next) {
+                up.scoreBoardEventListeners.dispatch(event);
+                upSeq = Long.MAX_VALUE;
+            } else if (i < any.length && next == any[i].seq) {
+                any[i++].listener.scoreBoardChange(event);
+            } else {
+                matching[j++].listener.scoreBoardChange(event);
+            }
+        }
+        if (upSeq != Long.MAX_VALUE) { up.scoreBoardEventListeners.dispatch(event); }
+    }
+
+    private static Property<?> indexProperty(ScoreBoardListener listener) {
+        if (!(listener instanceof ConditionalScoreBoardListener)) { return null; }
+        ScoreBoardCondition<?> condition = ((ConditionalScoreBoardListener<?>) listener).getCondition();
+        return condition == null ? null : condition.getProperty();
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                Entry[] result = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, result, 0, i);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result;
+            }
+        }
+        return entries;
+    }
+
+    private static final class Entry {
+        private Entry(ScoreBoardListener listener, long seq) {
+            this.listener = listener;
+            this.seq = seq;
+            property = indexProperty(listener);
+        }
+
+        private final ScoreBoardListener listener;
+        private final long seq;
+        private final Property<?> property;
+    }
+
+    private long nextSeq = 0;
+    private volatile ScoreBoardEventProviderImpl<?> parent;
+    private volatile long parentSeq;
+    private final Map<ScoreBoardListener, Entry> registered = new HashMap<>();
+    private volatile Entry[] unconditional = NONE;
+    private final Map<Property<?>, Entry[]> byProperty = new ConcurrentHashMap<>();
+
+    private static final Entry[] NONE = new Entry[0];
+}
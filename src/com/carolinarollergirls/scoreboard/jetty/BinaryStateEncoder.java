@@ -0,0 +1,178 @@
+package com.carolinarollergirls.scoreboard.jetty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+/**
+ * Encodes state updates for a WebSocket connected with proto=bin.
+ *
+ * Every path is given a number the first time it is sent on the connection and
+ * only referenced by that number afterwards. Integers are sent relative to the
+ * last value of the same path when that is shorter, so a running clock costs a
+ * few bytes per second. All numbers are unsigned LEB128 varints, signed ones
+ * are zigzag encoded first. A frame is:
+ *
+ * <pre>
+ * frame  := 2 varint(zigzag(seq - previous seq)) varint(#paths) path* varint(#updates) update*
+ * path   := varint(length) utf8
+ * update := varint(id - previous id) tag value
+ * </pre>
+ *
+ * seq is the sequence number of the state the updates are from, relative to
+ * the previous frame and starting at 0. Frames that aren't from a numbered
+ * state leave it unchanged. New paths get the next free ids in the order they are listed. Updates are
+ * sorted by id, the first one is relative to 0. Tags are 0 for null, 1 for
+ * false, 2 for true, 3 for an integer, 4 for the difference to the previous
+ * integer of the path, 5 for a utf8 string and 6 for any other value as JSON.
+ * Strings and JSON are prefixed with their length in bytes.
+ *
+ * Frames build on each other, so they have to be sent in the order they were
+ * encoded. html/json/WS.js has the matching decoder.
+ */
+class BinaryStateEncoder {
+    // sequence is negative if the updates aren't from a numbered state.
+    public ByteBuffer encode(Map<String, Object> updates, long sequence) {
+        List<Path> newPaths = new ArrayList<>();
+        Update[] sorted = new Update[updates.size()];
+        int n = 0;
+        for (Map.Entry<String, Object> e : updates.entrySet()) {
+            Path p = paths.get(e.getKey());
+            if (p == null) {
+                p = new Path(e.getKey(), paths.size());
+                paths.put(p.path, p);
+                newPaths.add(p);
+            }
+            sorted[n++] = new Update(p, e.getValue());
+        }
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.path.id, b.path.id));
+
+        out = new byte[64];
+        size = 0;
+        writeByte(VERSION);
+        long sequenceDelta = 0;
+        if (sequence >= 0) {
+            sequenceDelta = sequence - lastSequence;
+            lastSequence = sequence;
+        }
+        writeVarint(zigzag(sequenceDelta));
+        writeVarint(newPaths.size());
+        for (Path p : newPaths) { writeBytes(p.path.getBytes(StandardCharsets.UTF_8)); }
+        writeVarint(sorted.length);
+        int lastId = 0;
+        for (Update u : sorted) {
+            writeVarint(u.path.id - lastId);
+            lastId = u.path.id;
+            writeValue(u.path, u.value);
+        }
+        return ByteBuffer.wrap(out, 0, size);
+    }
+
+    private void writeValue(Path p, Object v) {
+        boolean hadInt = p.hasInt;
+        p.hasInt = false;
+        if (v == null) {
+            writeByte(NULL);
+        } else if (v instanceof Boolean) {
+            writeByte((Boolean) v ? TRUE : FALSE);
+        } else if ((v instanceof Long || v instanceof Integer) && isSafe(((Number) v).longValue())) {
+            long l = ((Number) v).longValue();
+            long delta = l - p.lastInt;
+            if (hadInt && isSafe(delta) && varintSize(zigzag(delta)) < varintSize(zigzag(l))) {
+                writeByte(INT_DELTA);
+                writeVarint(zigzag(delta));
+            } else {
+                writeByte(INT);
+                writeVarint(zigzag(l));
+            }
+            p.hasInt = true;
+            p.lastInt = l;
+        } else if (v instanceof String) {
+            writeByte(STRING);
+            writeBytes(((String) v).getBytes(StandardCharsets.UTF_8));
+        } else {
+            writeByte(JSON_VALUE);
+            try {
+                writeBytes(JSON.std.asBytes(v));
+            } catch (Exception e) { throw new RuntimeException(e); }
+        }
+    }
+
+    // Browsers decode numbers as doubles, so keep zigzag encoded values below 2^53.
+    private static boolean isSafe(long l) { return l > -(1L << 52) && l < (1L << 52); }
+
+    private static long zigzag(long l) { return (l << 1) ^ (l >> 63); }
+
+    private static int varintSize(long l) {
+        int size = 1;
+        while ((l >>>= 7) != 0) { size++; }
+        return size;
+    }
+
+    private void writeVarint(long l) {
+        while ((l & ~0x7FL) != 0) {
+            writeByte((int) ((l & 0x7F) | 0x80));
+            l >>>= 7;
+        }
+        writeByte((int) l);
+    }
+
+    private void writeBytes(byte[] b) {
+        writeVarint(b.length);
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, out, size, b.length);
+        size += b.length;
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        out[size++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > out.length) { out = Arrays.copyOf(out, Math.max(out.length * 2, size + extra)); }
+    }
+
+    private static class Path {
+        private Path(String path, int id) {
+            this.path = path;
+            this.id = id;
+        }
+
+        private final String path;
+        private final int id;
+        private boolean hasInt;
+        private long lastInt;
+    }
+
+    private static class Update {
+        private Update(Path path, Object value) {
+            this.path = path;
+            this.value = value;
+        }
+
+        private final Path path;
+        private final Object value;
+    }
+
+    private Map<String, Path> paths = new HashMap<>();
+    private long lastSequence;
+    private byte[] out;
+    private int size;
+
+    public static final int VERSION = 2;
+
+    public static final int NULL = 0;
+    public static final int FALSE = 1;
+    public static final int TRUE = 2;
+    public static final int INT = 3;
+    public static final int INT_DELTA = 4;
+    public static final int STRING = 5;
+    public static final int JSON_VALUE = 6;
+}
@@ -31,11 +31,13 @@ import io.prometheus.client.filter.MetricsFilter;
 import io.prometheus.client.hotspot.DefaultExports;
 
 public class JettyServletScoreBoardController {
-    public JettyServletScoreBoardController(ScoreBoard sb, JSONStateManager jsm, String host, int port) {
+    public JettyServletScoreBoardController(ScoreBoard sb, JSONStateManager jsm, String host, int port,
+                                            WS.Policy wsPolicy) {
         scoreBoard = sb;
         this.jsm = jsm;
         this.host = host;
         this.port = port;
+        this.wsPolicy = wsPolicy;
 
         init();
     }
@@ -78,7 +80,7 @@ public class JettyServletScoreBoardController {
         urlsServlet = new UrlsServlet(server);
         sch.addServlet(new ServletHolder(urlsServlet), "/urls/*");
 
-        ws = new WS(scoreBoard, jsm);
+        ws = new WS(scoreBoard, jsm, wsPolicy);
         sch.addServlet(new ServletHolder(ws), "/WS/*");
 
         DefaultExports.initialize();
@@ -136,6 +138,7 @@ public class JettyServletScoreBoardController {
     protected int port;
     protected UrlsServlet urlsServlet;
     protected WS ws;
+    protected WS.Policy wsPolicy;
     protected MetricsServlet metricsServlet;
 
     // No tournament lasts more than a week, so this allows plenty of time for
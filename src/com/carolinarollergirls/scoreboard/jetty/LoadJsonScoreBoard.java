@@ -1,12 +1,12 @@
 package com.carolinarollergirls.scoreboard.jetty;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
@@ -19,11 +19,10 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
-import com.fasterxml.jackson.jr.ob.JSON;
-
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Flag;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Source;
+import com.carolinarollergirls.scoreboard.json.JSONStateFile;
 import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONSetter;
 import com.carolinarollergirls.scoreboard.utils.StatsbookImporter;
 
@@ -57,19 +56,26 @@ public class LoadJsonScoreBoard extends HttpServlet {
                     if (!item.isFormField()) {
                         if (request.getPathInfo().equalsIgnoreCase("/JSON")) {
                             runningImports.incrementAndGet();
-                            InputStream stream = item.openStream();
-                            Map<String, Object> map = JSON.std.mapFrom(stream);
-                            stream.close();
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> state = (Map<String, Object>) map.get("state");
-                            ScoreBoardJSONSetter.updateToCurrentVersion(state);
-                            scoreBoard.runInBatch(new Runnable() {
-                                @Override
-                                public void run() {
-                                    ScoreBoardJSONSetter.set(scoreBoard, state, Source.JSON);
-                                }
-                            });
-                            runningImports.decrementAndGet();
+                            // Spooled to disk so the file can be read in two passes
+                            // without holding it in memory.
+                            File tmp = File.createTempFile("upload", ".json");
+                            try {
+                                Files.copy(item.openStream(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                                JSONStateFile file = new JSONStateFile(tmp);
+                                scoreBoard.runInBatch(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        try {
+                                            ScoreBoardJSONSetter.set(scoreBoard, file, Source.JSON);
+                                        } catch (IOException e) { throw new UncheckedIOException(e); }
+                                    }
+                                });
+                            } catch (UncheckedIOException e) {
+                                throw e.getCause();
+                            } finally {
+                                tmp.delete();
+                                runningImports.decrementAndGet();
+                            }
                             response.setContentType("text/plain");
                             response.setStatus(HttpServletResponse.SC_OK);
 
@@ -1,11 +1,18 @@
 package com.carolinarollergirls.scoreboard.jetty;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -13,8 +20,13 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.fasterxml.jackson.jr.ob.JSON;
+import com.fasterxml.jackson.jr.ob.JSONComposer;
+import com.fasterxml.jackson.jr.ob.comp.ObjectComposer;
 
+import com.carolinarollergirls.scoreboard.json.JSONStateFile;
 import com.carolinarollergirls.scoreboard.json.JSONStateManager;
+import com.carolinarollergirls.scoreboard.json.JSONStateSnapshotter;
+import com.carolinarollergirls.scoreboard.utils.Logger;
 
 public class SaveJsonScoreBoard extends HttpServlet {
 
@@ -23,47 +35,170 @@ public class SaveJsonScoreBoard extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
         throws ServletException, IOException {
-        // Use a TreeMap to keep output sorted.
-        Map<String, Object> state = new TreeMap<>(jsm.getState());
-
+        JSONStateManager.StateDelta snapshot = jsm.getFullState();
         String path = request.getParameter("path");
-        if (path != null) {
-            List<String> prefixes = Arrays.asList(path.split(","));
-            Iterator<String> it = state.keySet().iterator();
-            while (it.hasNext()) {
-                String key = it.next();
-                boolean keep = key.startsWith("ScoreBoard.Version");
-                for (String prefix : prefixes) {
-                    if (key.startsWith(prefix)) { keep = true; }
+        List<SortedMap<String, Object>> ranges = getRanges(snapshot.state, path);
+        Map<String, File> archived = getArchivedGames(snapshot.state, path);
+
+        if (!hasEntries(ranges) && archived.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No objects found.");
+            return;
+        }
+
+        // The state only changes together with its sequence number, so the
+        // output for this URL is fully determined by it.
+        boolean gzip = acceptsGzip(request.getHeader("Accept-Encoding"));
+        String etag = "\"" + Long.toHexString(snapshot.sequence) + (gzip ? "-gzip\"" : "\"");
+        response.setHeader("ETag", etag);
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Expires", "-1");
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            out = new GZIPOutputStream(out, 8192);
+        }
+        ObjectComposer<ObjectComposer<JSONComposer<OutputStream>>> state =
+            JSON.std.with(JSON.Feature.PRETTY_PRINT_OUTPUT).composeTo(out).startObject().startObjectField("state");
+        // Archived games are merged in at their place in key order. None of
+        // their keys are in memory, so each one fits between two keys there.
+        List<String> prefixes = path == null ? null : Arrays.asList(path.split(","));
+        Iterator<Map.Entry<String, File>> games = archived.entrySet().iterator();
+        Map.Entry<String, File> game = games.hasNext() ? games.next() : null;
+        for (SortedMap<String, Object> range : ranges) {
+            for (Map.Entry<String, Object> entry : range.entrySet()) {
+                while (game != null && game.getKey().compareTo(entry.getKey()) < 0) {
+                    writeArchivedGame(state, game.getKey(), game.getValue(), prefixes);
+                    game = games.hasNext() ? games.next() : null;
                 }
-                if (!keep) { it.remove(); }
+                if (!isSecret(entry.getKey())) { state.putObject(entry.getKey(), entry.getValue()); }
             }
         }
-        // Users may use saves to share with the world, so remove secrets.
-        Iterator<String> it = state.keySet().iterator();
-        while (it.hasNext()) {
-            if (it.next().endsWith("Secret")) { it.remove(); }
+        while (game != null) {
+            writeArchivedGame(state, game.getKey(), game.getValue(), prefixes);
+            game = games.hasNext() ? games.next() : null;
+        }
+        // Closes the stream, which also writes the gzip trailer.
+        state.end().end().finish();
+    }
+
+    private static void writeArchivedGame(ObjectComposer<?> state, String gamePrefix, File file,
+                                          List<String> prefixes) throws IOException {
+        try {
+            new JSONStateFile(file).read((key, value) -> {
+                if (key.startsWith(gamePrefix) && matchesAny(key, prefixes) && !isSecret(key)) {
+                    try {
+                        state.putObject(key, value);
+                    } catch (IOException e) { throw new UncheckedIOException(e); }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            Logger.printMessage("Error exporting archived game from " + file + ": " + e.getMessage());
         }
+    }
 
-        if (state.isEmpty()) {
-            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No objects found.");
-        } else {
-            response.setContentType("application/json");
-            String json = JSON.std.with(JSON.Feature.PRETTY_PRINT_OUTPUT)
-                              .composeString()
-                              .startObject()
-                              .putObject("state", state)
-                              .end()
-                              .finish();
-
-            response.setHeader("Cache-Control", "no-cache");
-            response.setHeader("Expires", "-1");
-            response.setCharacterEncoding("utf-8");
-            response.getOutputStream().print(json);
-            response.getOutputStream().flush();
-            response.setStatus(HttpServletResponse.SC_OK);
+    /**
+     * The parts of state to export, in key order and without overlap. A key
+     * is exported if it starts with any of the comma separated prefixes in
+     * path, or with ScoreBoard.Version. Without a path all of state is
+     * exported.
+     */
+    static List<SortedMap<String, Object>> getRanges(SortedMap<String, Object> state, String path) {
+        List<SortedMap<String, Object>> ranges = new ArrayList<>();
+        if (path == null) {
+            ranges.add(state);
+            return ranges;
         }
+        TreeSet<String> prefixes = new TreeSet<>(Arrays.asList(path.split(",")));
+        prefixes.add("ScoreBoard.Version");
+        // Prefixes sort before all keys they match, and after all keys
+        // matching an earlier prefix unless they extend that prefix.
+        String last = null;
+        for (String prefix : prefixes) {
+            if (last != null && prefix.startsWith(last)) { continue; }
+            ranges.add(state.subMap(prefix, prefix + '\uffff'));
+            last = prefix;
+        }
+        return ranges;
+    }
+
+    /**
+     * The snapshots of archived games that path asks for, by the key prefix
+     * of the game. Their state isn't held in memory, so it is read from there.
+     */
+    static Map<String, File> getArchivedGames(SortedMap<String, Object> state, String path) {
+        Map<String, File> games = new TreeMap<>();
+        List<String> prefixes = path == null ? null : Arrays.asList(path.split(","));
+        for (Map.Entry<String, Object> e : state.subMap(ARCHIVED_PREFIX, ARCHIVED_PREFIX + '\uffff').entrySet()) {
+            String key = e.getKey();
+            if (!key.endsWith(FILENAME_SUFFIX) || !(e.getValue() instanceof String)) { continue; }
+            String id = key.substring(ARCHIVED_PREFIX.length(), key.length() - FILENAME_SUFFIX.length());
+            String gamePrefix = "ScoreBoard.Game(" + id + ")";
+            boolean wanted = prefixes == null;
+            for (int i = 0; !wanted && i < prefixes.size(); i++) {
+                wanted = gamePrefix.startsWith(prefixes.get(i)) || prefixes.get(i).startsWith(gamePrefix);
+            }
+            if (wanted) { games.put(gamePrefix, JSONStateSnapshotter.getFile((String) e.getValue())); }
+        }
+        return games;
+    }
+
+    private static boolean matchesAny(String key, List<String> prefixes) {
+        if (prefixes == null) { return true; }
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) { return true; }
+        }
+        return false;
+    }
+
+    private static boolean hasEntries(List<SortedMap<String, Object>> ranges) {
+        for (SortedMap<String, Object> range : ranges) {
+            for (String key : range.keySet()) {
+                if (!isSecret(key)) { return true; }
+            }
+        }
+        return false;
+    }
+
+    // Users may use saves to share with the world, so leave out secrets.
+    private static boolean isSecret(String key) { return key.endsWith("Secret"); }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) { return false; }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) { continue; }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].replace(" ", "");
+                if (param.matches("[qQ]=0(\\.0*)?")) { return false; }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) { return false; }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) { tag = tag.substring(2); }
+            if (tag.equals("*") || tag.equals(etag)) { return true; }
+        }
+        return false;
     }
 
     protected final JSONStateManager jsm;
+
+    private static final String ARCHIVED_PREFIX = "ScoreBoard.ArchivedGame(";
+    private static final String FILENAME_SUFFIX = ").Filename";
 }
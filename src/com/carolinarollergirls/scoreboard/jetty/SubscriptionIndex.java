@@ -0,0 +1,102 @@
+package com.carolinarollergirls.scoreboard.jetty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The paths all subscribers have registered, in one trie.
+ *
+ * Paths match like in WS.PathTrie: a path covers itself and everything below
+ * it, and Blah(*) matches any id of Blah. Looking up a key splits it once and
+ * walks the trie once, collecting the subscribers of every node on the way, so
+ * the cost depends on the length of the key and the number of matches rather
+ * than on the number of subscribers.
+ *
+ * Not thread safe.
+ */
+class SubscriptionIndex<T> {
+    public void add(String path, T subscriber) {
+        Node<T> head = root;
+        for (String part : split(path)) {
+            Node<T> parent = head;
+            head = head.children.computeIfAbsent(part, k -> new Node<>(parent, k));
+        }
+        head.subscribers.add(subscriber);
+        List<Node<T>> nodes = bySubscriber.computeIfAbsent(subscriber, k -> new ArrayList<>());
+        nodes.add(head);
+    }
+
+    public void removeAll(T subscriber) {
+        List<Node<T>> nodes = bySubscriber.remove(subscriber);
+        if (nodes == null) { return; }
+        for (Node<T> n : nodes) {
+            n.subscribers.remove(subscriber);
+            prune(n);
+        }
+    }
+
+    public void collect(String key, Collection<T> into) { collect(root, split(key), 0, into); }
+
+    private void collect(Node<T> head, String[] p, int i, Collection<T> into) {
+        for (;; i++) {
+            into.addAll(head.subscribers);
+            if (i >= p.length) { return; }
+            // Allow Blah(*).
+            Node<T> any = head.children.get("*)");
+            if (any != null) {
+                int j;
+                // id captured by * might contain . and thus be split - find the end
+                for (j = i; j < p.length && !p[j].endsWith(")"); j++)
+                    ;
+                collect(any, p, j + 1, into);
+            }
+            head = head.children.get(p[i]);
+            if (head == null) { return; }
+        }
+    }
+
+    // Drops n and its ancestors for as long as nothing is left below them.
+    private void prune(Node<T> n) {
+        while (n.parent != null && n.children.isEmpty() && n.subscribers.isEmpty()) {
+            n.parent.children.remove(n.name, n);
+            n = n.parent;
+        }
+    }
+
+    // Same as path.split("[.(]"), without the regex.
+    static String[] split(String path) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '.' || c == '(') {
+                parts.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(path.substring(start));
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) { size--; }
+        return parts.subList(0, size).toArray(new String[size]);
+    }
+
+    private static class Node<T> {
+        private Node(Node<T> parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        private final Node<T> parent;
+        private final String name;
+        private Map<String, Node<T>> children = new HashMap<>();
+        private Set<T> subscribers = new HashSet<>();
+    }
+
+    private Node<T> root = new Node<>(null, null);
+    private Map<T, List<Node<T>>> bySubscriber = new HashMap<>();
+}
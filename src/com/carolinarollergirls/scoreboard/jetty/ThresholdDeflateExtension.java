@@ -0,0 +1,99 @@
+package com.carolinarollergirls.scoreboard.jetty;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.extensions.compress.PerMessageDeflateExtension;
+
+import io.prometheus.client.Counter;
+
+/**
+ * permessage-deflate that sends small messages uncompressed.
+ *
+ * Deflating a clock update costs more CPU than the few bytes it saves, while
+ * the initial state compresses to a fraction of its size. The extension lets
+ * each message be compressed or not, but a plain message must not overtake
+ * compressed frames still queued in the deflater. So small messages only skip
+ * compression while nothing else is in flight, which is almost always.
+ */
+public class ThresholdDeflateExtension extends PerMessageDeflateExtension {
+    public static final String NAME = "permessage-deflate";
+
+    // An offer from a client with the threshold for the connection added.
+    public static ExtensionConfig withThreshold(ExtensionConfig offer, int bytes) {
+        ExtensionConfig config = new ExtensionConfig(offer);
+        config.setParameter(THRESHOLD_PARAMETER, bytes);
+        return config;
+    }
+
+    // The threshold isn't part of the protocol, so it is taken out before
+    // the configuration is negotiated and echoed to the client.
+    @Override
+    public void setConfig(ExtensionConfig config) {
+        threshold = config.getParameter(THRESHOLD_PARAMETER, DEFAULT_THRESHOLD);
+        ExtensionConfig offer = new ExtensionConfig(config.getName());
+        for (Map.Entry<String, String> p : config.getParameters().entrySet()) {
+            if (p.getKey().equals(THRESHOLD_PARAMETER)) { continue; }
+            if (p.getValue() == null) {
+                offer.setParameter(p.getKey());
+            } else {
+                offer.setParameter(p.getKey(), p.getValue());
+            }
+        }
+        super.setConfig(offer);
+    }
+
+    public int getThreshold() { return threshold; }
+
+    @Override
+    public synchronized void outgoingFrame(Frame frame, WriteCallback callback, BatchMode batchMode) {
+        boolean message = frame.getType() == Frame.Type.TEXT || frame.getType() == Frame.Type.BINARY;
+        if (frame.getType().isData()) { inputBytes.inc(frame.getPayloadLength()); }
+        if (message && frame.isFin() && frame.getPayloadLength() < threshold && queued.get() == 0) {
+            nextOutgoingFrame(frame, callback, batchMode);
+            return;
+        }
+        queued.incrementAndGet();
+        super.outgoingFrame(frame, new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                queued.decrementAndGet();
+                if (callback != null) { callback.writeSuccess(); }
+            }
+            @Override
+            public void writeFailed(Throwable x) {
+                queued.decrementAndGet();
+                if (callback != null) { callback.writeFailed(x); }
+            }
+        }, batchMode);
+    }
+
+    @Override
+    protected void nextOutgoingFrame(Frame frame, WriteCallback callback, BatchMode batchMode) {
+        if (frame.getType().isData()) { outputBytes.inc(frame.getPayloadLength()); }
+        super.nextOutgoingFrame(frame, callback, batchMode);
+    }
+
+    // Frames handed to the deflater that haven't been written yet.
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private int threshold = DEFAULT_THRESHOLD;
+
+    private static final String THRESHOLD_PARAMETER = "x-crg-threshold";
+    private static final int DEFAULT_THRESHOLD = 256;
+
+    private static final Counter inputBytes =
+        Counter.build()
+            .name("crg_websocket_deflate_input_bytes")
+            .help("Bytes of messages sent on connections using permessage-deflate")
+            .register();
+    private static final Counter outputBytes =
+        Counter.build()
+            .name("crg_websocket_deflate_output_bytes")
+            .help("Bytes actually sent for those messages, after compression where it was applied")
+            .register();
+}
@@ -1,7 +1,10 @@
 package com.carolinarollergirls.scoreboard.jetty;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -10,10 +13,12 @@ import java.util.TreeSet;
 import javax.servlet.http.HttpServletRequest;
 
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
 import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
@@ -36,7 +41,7 @@ import com.carolinarollergirls.scoreboard.core.interfaces.Team;
 import com.carolinarollergirls.scoreboard.core.interfaces.Timeout;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Flag;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Source;
-import com.carolinarollergirls.scoreboard.json.JSONStateListener;
+import com.carolinarollergirls.scoreboard.json.AsyncJSONStateListener;
 import com.carolinarollergirls.scoreboard.json.JSONStateManager;
 import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONSetter;
 import com.carolinarollergirls.scoreboard.utils.Logger;
@@ -47,13 +52,31 @@ import io.prometheus.client.Histogram;
 
 public class WS extends WebSocketServlet {
 
-    public WS(ScoreBoard s, JSONStateManager j) {
+    public WS(ScoreBoard s, JSONStateManager j) { this(s, j, new Policy()); }
+    public WS(ScoreBoard s, JSONStateManager j, Policy p) {
         sb = s;
         jsm = j;
+        policy = p;
+        jsm.register(new SubscriptionRouter());
     }
 
+    // The extension factory is deprecated in favour of the Jetty 10 API, but
+    // is the way to change extensions in 9.4.
+    @SuppressWarnings("deprecation")
     @Override
     public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(policy.idleTimeoutSeconds * 1000L);
+        factory.getPolicy().setInputBufferSize(policy.inputBufferSize);
+        factory.getPolicy().setMaxTextMessageSize(policy.maxMessageSize);
+        // Jetty offers all its compression extensions by default. Browsers only
+        // ask for permessage-deflate, so that's the one we replace.
+        factory.getExtensionFactory().unregister("deflate-frame");
+        factory.getExtensionFactory().unregister("x-webkit-deflate-frame");
+        if (policy.compress) {
+            factory.getExtensionFactory().register(ThresholdDeflateExtension.NAME, ThresholdDeflateExtension.class);
+        } else {
+            factory.getExtensionFactory().unregister(ThresholdDeflateExtension.NAME);
+        }
         factory.setCreator(new ScoreBoardWebSocketCreator());
     }
 
@@ -67,8 +90,52 @@ public class WS extends WebSocketServlet {
         }
     }
 
+    /**
+     * Connection settings, from the command line.
+     *
+     * Messages below compressThreshold bytes are sent uncompressed even if the
+     * client negotiated permessage-deflate.
+     */
+    public static final class Policy {
+        public Policy() { this(true, 256, 300, 4096, 1024 * 1024); }
+        private Policy(boolean compress, int compressThreshold, int idleTimeoutSeconds, int inputBufferSize,
+                       int maxMessageSize) {
+            this.compress = compress;
+            this.compressThreshold = compressThreshold;
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+            this.inputBufferSize = inputBufferSize;
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        public Policy withCompress(boolean c) {
+            return new Policy(c, compressThreshold, idleTimeoutSeconds, inputBufferSize, maxMessageSize);
+        }
+        public Policy withCompressThreshold(int bytes) {
+            return new Policy(compress, bytes, idleTimeoutSeconds, inputBufferSize, maxMessageSize);
+        }
+        public Policy withIdleTimeoutSeconds(int seconds) {
+            return new Policy(compress, compressThreshold, seconds, inputBufferSize, maxMessageSize);
+        }
+        public Policy withInputBufferSize(int bytes) {
+            return new Policy(compress, compressThreshold, idleTimeoutSeconds, bytes, maxMessageSize);
+        }
+        public Policy withMaxMessageSize(int bytes) {
+            return new Policy(compress, compressThreshold, idleTimeoutSeconds, inputBufferSize, bytes);
+        }
+
+        public final boolean compress;
+        public final int compressThreshold;
+        public final int idleTimeoutSeconds;
+        public final int inputBufferSize;
+        public final int maxMessageSize;
+    }
+
     private ScoreBoard sb;
     private JSONStateManager jsm;
+    private final Policy policy;
+    // Guards groups as well.
+    private final SubscriptionIndex<SubscriptionGroup> subscriptions = new SubscriptionIndex<>();
+    private final Map<Set<String>, SubscriptionGroup> groups = new HashMap<>();
 
     private static final Gauge connectionsActive =
         Gauge.build().name("crg_websocket_active_connections").help("Current WebSocket connections").register();
@@ -80,11 +147,125 @@ public class WS extends WebSocketServlet {
                                                               .name("crg_websocket_messages_sent_duration_seconds")
                                                               .help("Time spent sending WebSocket messages")
                                                               .register();
+    private static final Counter resumes = Counter.build()
+                                               .name("crg_websocket_resumed_sessions")
+                                               .help("Reconnecting clients that only got the changes they missed")
+                                               .register();
+    private static final Counter resyncs =
+        Counter.build()
+            .name("crg_websocket_resynced_sessions")
+            .help("Reconnecting clients that were gone too long to resume and got the full state")
+            .register();
     private static final Counter messagesSentFailures = Counter.build()
                                                             .name("crg_websocket_messages_sent_failed")
                                                             .help("Number of WebSocket messages we failed to send")
                                                             .register();
 
+    // For messages that aren't a numbered version of the state.
+    private static final long NO_SEQUENCE = -1;
+    private static final String GAME_PREFIX = "ScoreBoard.Game(";
+
+    private static String stateJson(Map<String, Object> state, Set<String> changed, long sequence)
+        throws IOException {
+        Map<String, Object> updates = new HashMap<>();
+        for (String k : changed) { updates.put(k, state.get(k)); }
+        Map<String, Object> json = new HashMap<>();
+        json.put("state", updates);
+        if (sequence != NO_SEQUENCE) { json.put("seq", sequence); }
+        return JSON.std.with(JSON.Feature.WRITE_NULL_PROPERTIES).composeString().addObject(json).finish();
+    }
+
+    // Must hold subscriptions.
+    private void subscribe(ScoreBoardWebSocket ws, Set<String> newPaths) {
+        Set<String> paths = new TreeSet<>(newPaths);
+        if (ws.group != null) {
+            if (ws.group.paths.containsAll(newPaths)) { return; }
+            paths.addAll(ws.group.paths);
+        }
+        unsubscribe(ws);
+        SubscriptionGroup group = groups.get(paths);
+        if (group == null) {
+            group = new SubscriptionGroup(paths);
+            groups.put(paths, group);
+            for (String p : paths) { subscriptions.add(p, group); }
+        }
+        group.members.add(ws);
+        ws.group = group;
+    }
+
+    // Must hold subscriptions.
+    private void unsubscribe(ScoreBoardWebSocket ws) {
+        SubscriptionGroup group = ws.group;
+        if (group == null) { return; }
+        group.members.remove(ws);
+        if (group.members.isEmpty()) {
+            groups.remove(group.paths);
+            subscriptions.removeAll(group);
+        }
+        ws.group = null;
+    }
+
+    /**
+     * Connections that registered exactly the same paths.
+     *
+     * They are all offered the same updates, so the JSON for an update is only
+     * built once and the resulting string is sent to all of them. Deliveries
+     * that differ, because a slow connection had updates merged, are encoded
+     * separately.
+     */
+    private static class SubscriptionGroup {
+        private SubscriptionGroup(Set<String> paths) { this.paths = paths; }
+
+        private synchronized void routed(Map<String, Object> state, Set<String> changed, long sequence) {
+            routedState = state;
+            routedChanged = changed;
+            routedSequence = sequence;
+            routedJson = null;
+        }
+
+        private String encode(Map<String, Object> state, Set<String> changed, long sequence) throws IOException {
+            synchronized (this) {
+                if (state == routedState && changed == routedChanged && sequence == routedSequence) {
+                    if (routedJson == null) { routedJson = stateJson(state, changed, sequence); }
+                    return routedJson;
+                }
+            }
+            return stateJson(state, changed, sequence);
+        }
+
+        private final Set<String> paths;
+        private final Set<ScoreBoardWebSocket> members = new HashSet<>();
+        private Map<String, Object> routedState;
+        private Set<String> routedChanged;
+        private long routedSequence;
+        private String routedJson;
+    }
+
+    // Passes each changed key on to the connections that registered for it.
+    private class SubscriptionRouter implements AsyncJSONStateListener {
+        @Override
+        public void sendUpdates(Map<String, Object> state, Set<String> changed, long sequence, Runnable done) {
+            Map<SubscriptionGroup, Set<String>> routed = new HashMap<>();
+            Map<SubscriptionGroup, List<ScoreBoardWebSocket>> members = new HashMap<>();
+            List<SubscriptionGroup> matches = new ArrayList<>();
+            synchronized (subscriptions) {
+                for (String k : changed) {
+                    if (k.endsWith("Secret")) { continue; }
+                    subscriptions.collect(k, matches);
+                    for (SubscriptionGroup g : matches) { routed.computeIfAbsent(g, x -> new HashSet<>()).add(k); }
+                    matches.clear();
+                }
+                for (SubscriptionGroup g : routed.keySet()) { members.put(g, new ArrayList<>(g.members)); }
+            }
+            for (Map.Entry<SubscriptionGroup, Set<String>> e : routed.entrySet()) {
+                Set<String> keys = Collections.unmodifiableSet(e.getValue());
+                e.getKey().routed(state, keys, sequence);
+                for (ScoreBoardWebSocket ws : members.get(e.getKey())) { ws.mailbox.offer(state, keys, sequence); }
+            }
+            done.run();
+        }
+    }
+
     public class ScoreBoardWebSocketCreator implements WebSocketCreator {
         @Override
         public Object createWebSocket(ServletUpgradeRequest request, ServletUpgradeResponse response) {
@@ -95,16 +276,30 @@ public class WS extends WebSocketServlet {
             if (source == null) { source = "CUSTOM CLIENT"; }
             String platform = baseRequest.getParameter("platform");
             if (platform == null) { platform = baseRequest.getHeader("User-Agent"); }
-            return new ScoreBoardWebSocket(httpSessionId, remoteAddress, source, platform);
+            boolean binary = "bin".equals(baseRequest.getParameter("proto"));
+            if (policy.compress) {
+                // Each connection gets its own extension instance, which takes
+                // the threshold from the offer it is configured with.
+                List<ExtensionConfig> offers = new ArrayList<>();
+                for (ExtensionConfig offer : request.getExtensions()) {
+                    offers.add(ThresholdDeflateExtension.NAME.equals(offer.getName())
+                                   ? ThresholdDeflateExtension.withThreshold(offer, policy.compressThreshold)
+                                   : offer);
+                }
+                response.setExtensions(offers);
+            }
+            return new ScoreBoardWebSocket(httpSessionId, remoteAddress, source, platform, binary);
         }
     }
 
-    @WebSocket(maxTextMessageSize = 1024 * 1024)
-    public class ScoreBoardWebSocket implements JSONStateListener {
+    @WebSocket
+    public class ScoreBoardWebSocket implements AsyncJSONStateListener {
 
-        public ScoreBoardWebSocket(String httpSessionId, String remoteAddress, String source, String platform) {
+        public ScoreBoardWebSocket(String httpSessionId, String remoteAddress, String source, String platform,
+                                   boolean binary) {
             device = sb.getClients().getOrAddDevice(httpSessionId);
             sbClient = sb.getClients().addClient(device.getId(), remoteAddress, source, platform);
+            if (binary) { binaryEncoder = new BinaryStateEncoder(); }
         }
 
         @OnWebSocketMessage
@@ -125,11 +320,32 @@ public class WS extends WebSocketServlet {
                     if (jsonPaths != null) {
                         Set<String> newPaths = new TreeSet<>();
                         for (Object p : jsonPaths) { newPaths.add((String) p); }
-                        // Send on updates for the newly registered paths.
+                        synchronized (subscriptions) { subscribe(this, newPaths); }
+                        openGames(newPaths);
+                        // Send on the current values for the newly registered paths. Anything
+                        // that changes after this is routed to us.
+                        // A reconnecting client tells us the last state it saw, and only
+                        // needs what changed since then if we still know.
+                        JSONStateManager.StateDelta delta = null;
+                        if (json.get("since") instanceof Number) {
+                            delta = jsm.getStateSince(((Number) json.get("since")).longValue());
+                            if (delta == null) {
+                                resyncs.inc();
+                                Map<String, Object> resync = new HashMap<>();
+                                resync.put("resync", true);
+                                send(resync);
+                            } else {
+                                resumes.inc();
+                            }
+                        }
+                        if (delta == null) { delta = jsm.getFullState(); }
                         PathTrie pt = new PathTrie();
                         pt.addAll(newPaths);
-                        sendWSUpdatesForPaths(pt, state.keySet());
-                        this.paths.addAll(newPaths);
+                        Set<String> matching = new HashSet<>();
+                        for (String k : delta.changed) {
+                            if (pt.covers(k) && !k.endsWith("Secret")) { matching.add(k); }
+                        }
+                        if (!matching.isEmpty()) { mailbox.offer(delta.state, matching, delta.sequence); }
                     }
                     break;
                 case "Set":
@@ -260,14 +476,51 @@ public class WS extends WebSocketServlet {
             } finally { timer.observeDuration(); }
         }
 
+        // State updates go out as binary frames if the client asked for them.
+        // done is run once the message has been handed to the network.
+        // This runs on the shared delivery pool, so it only takes sendLock,
+        // never the monitor onMessage holds while the model is busy.
+        private void sendState(Map<String, Object> state, Set<String> changed, long sequence, Runnable done) {
+            Histogram.Timer timer = messagesSentDuration.startTimer();
+            WriteCallback callback = new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    done.run();
+                }
+                @Override
+                public void writeFailed(Throwable x) {
+                    messagesSentFailures.inc();
+                    done.run();
+                }
+            };
+            try {
+                if (binaryEncoder == null) {
+                    SubscriptionGroup g = group;
+                    String message =
+                        g == null ? stateJson(state, changed, sequence) : g.encode(state, changed, sequence);
+                    synchronized (sendLock) { wsSession.getRemote().sendString(message, callback); }
+                } else {
+                    Map<String, Object> updates = new HashMap<>();
+                    for (String k : changed) { updates.put(k, state.get(k)); }
+                    synchronized (sendLock) {
+                        wsSession.getRemote().sendBytes(binaryEncoder.encode(updates, sequence), callback);
+                    }
+                }
+            } catch (Exception e) {
+                Logger.printMessage("Error sending state update: " + e);
+                Logger.printStackTrace(e);
+                messagesSentFailures.inc();
+                done.run();
+            } finally { timer.observeDuration(); }
+        }
+
         @OnWebSocketConnect
         public void onOpen(Session session) {
             wsSession = session;
             connectionsActive.inc();
-            jsm.register(this);
+            mailbox = jsm.createMailbox(this);
             device.access();
 
-            Map<String, Object> json = new HashMap<>();
             Map<String, Object> initialState = new HashMap<>();
             // Inject some of our own WS-specific information.
             // Session id is not included, as that's the secret cookie which
@@ -276,50 +529,71 @@ public class WS extends WebSocketServlet {
             initialState.put("WS.Device.Name", device.getName());
             initialState.put("WS.Client.Id", sbClient.getId());
             initialState.put("WS.Client.RemoteAddress", session.getRemoteAddress().getAddress().getHostAddress());
-            json.put("state", initialState);
-            send(json);
+            sendState(initialState, initialState.keySet(), NO_SEQUENCE, () -> {});
         }
 
         @OnWebSocketClose
         public void onClose(int closeCode, String message) {
             connectionsActive.dec();
-            jsm.unregister(this);
+            synchronized (subscriptions) { unsubscribe(this); }
+            if (mailbox != null) { mailbox.close(); }
+            if (!openGames.isEmpty()) {
+                sb.runInBatch(() -> {
+                    for (Game g : openGames) { g.removeViewer(); }
+                });
+            }
             sb.getClients().removeClient(sbClient);
 
             device.access();
         }
 
+        // Games the client registered for by id are loaded if they were
+        // archived, and kept from being archived while it is connected.
+        private void openGames(Set<String> paths) {
+            Set<String> ids = new HashSet<>();
+            for (String path : paths) {
+                if (!path.startsWith(GAME_PREFIX)) { continue; }
+                int end = path.indexOf(')', GAME_PREFIX.length());
+                String id = end < 0 ? path.substring(GAME_PREFIX.length()) : path.substring(GAME_PREFIX.length(), end);
+                if (!id.equals("*") && !openGameIds.contains(id)) { ids.add(id); }
+            }
+            if (ids.isEmpty()) { return; }
+            openGameIds.addAll(ids);
+            sb.runInBatch(() -> {
+                for (String id : ids) {
+                    Game g = sb.getGame(id);
+                    if (g != null) {
+                        g.addViewer();
+                        openGames.add(g);
+                    }
+                }
+            });
+        }
+
         public void sendError(String message) {
             Map<String, Object> json = new HashMap<>();
             json.put("error", message);
             send(json);
         }
 
-        // State changes from JSONStateManager.
-        @SuppressWarnings("hiding")
+        // State changes routed to us by the SubscriptionRouter, only
+        // containing keys we registered for. done is only run once the
+        // client has taken the message, so updates that arrive meanwhile
+        // are merged by the mailbox rather than queued up inside Jetty.
         @Override
-        public synchronized void sendUpdates(Map<String, Object> state, Set<String> changed) {
-            this.state = state;
-            sendWSUpdatesForPaths(paths, changed);
-        }
-
-        private void sendWSUpdatesForPaths(PathTrie watchedPaths, Set<String> changed) {
-            Map<String, Object> updates = new HashMap<>();
-            for (String k : changed) {
-                if (watchedPaths.covers(k) && !k.endsWith("Secret")) { updates.put(k, state.get(k)); }
-            }
-            if (updates.size() == 0) { return; }
-            Map<String, Object> json = new HashMap<>();
-            json.put("state", updates);
-            send(json);
-            updates.clear();
+        public void sendUpdates(Map<String, Object> state, Set<String> changed, long sequence, Runnable done) {
+            sendState(state, changed, sequence, done);
         }
 
         protected Client sbClient;
         protected Device device;
-        protected PathTrie paths = new PathTrie();
-        private Map<String, Object> state = new HashMap<>();
+        private JSONStateManager.Mailbox mailbox;
         private Session wsSession;
+        private BinaryStateEncoder binaryEncoder; // guarded by sendLock
+        private final Object sendLock = new Object();
+        private volatile SubscriptionGroup group; // guarded by subscriptions
+        private final Set<String> openGameIds = new HashSet<>();
+        private final Set<Game> openGames = new HashSet<>();
     }
 
     protected static class PathTrie {
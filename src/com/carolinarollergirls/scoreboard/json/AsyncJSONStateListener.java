@@ -0,0 +1,14 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import java.util.Map;
+import java.util.Set;
+
+// A listener that may finish sending updates after sendUpdates returns.
+// JSONStateListener is the common case of one that sends synchronously.
+public interface AsyncJSONStateListener {
+    // A snapshot of the current state, and which keys it it have changed,
+    // as for JSONStateListener. sequence numbers the state, see
+    // JSONStateManager.getStateSince. done has to be run once the listener
+    // is ready for the next update, nothing more is delivered to it until then.
+    public void sendUpdates(Map<String, Object> state, Set<String> changed, long sequence, Runnable done);
+}
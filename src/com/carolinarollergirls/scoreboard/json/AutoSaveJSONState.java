@@ -1,20 +1,37 @@
 package com.carolinarollergirls.scoreboard.json;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.io.FileUtils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.jr.ob.JSON;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
@@ -23,11 +40,27 @@ import com.carolinarollergirls.scoreboard.utils.Logger;
 
 import io.prometheus.client.Histogram;
 
-public class AutoSaveJSONState implements Runnable {
+/**
+ * Keeps the state on disk so it survives a restart or power failure.
+ *
+ * Every change set from the JSONStateManager is appended to a journal and
+ * synced before the next one is taken. Changes that arrive meanwhile are
+ * merged by the mailbox, so under load several go to disk in one write. Once
+ * a minute, or when the journal grows large, the full state is written as a
+ * checkpoint which names a new, empty journal. Loading reads the newest
+ * checkpoint and replays its journal on top.
+ *
+ * Checkpoints are JSON unless binary is set, in which case they are written
+ * in BinaryStateFormat, which is smaller and faster to read and write. Either
+ * kind is loaded, so the setting can be changed between runs.
+ */
+public class AutoSaveJSONState implements Runnable, AsyncJSONStateListener {
 
-    public AutoSaveJSONState(JSONStateManager jsm, File dir) {
+    public AutoSaveJSONState(JSONStateManager jsm, File dir) { this(jsm, dir, false); }
+    public AutoSaveJSONState(JSONStateManager jsm, File dir, boolean binary) {
         this.dir = dir;
         this.jsm = jsm;
+        this.binary = binary;
 
         try {
             FileUtils.forceMkdir(dir);
@@ -36,41 +69,132 @@ public class AutoSaveJSONState implements Runnable {
             throw new RuntimeException(ioE);
         }
         backupAutoSavedFiles();
-        executor.scheduleAtFixedRate(AutoSaveJSONState.this, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+        // The first update is the whole state, which becomes the first checkpoint.
+        jsm.register(this);
     }
 
+    // Writes a checkpoint of the current state, e.g. before shutting down so
+    // the next start doesn't have to replay the journal.
     @Override
-    public synchronized void run() {
+    public void run() {
+        Future<?> f = executor.submit(() -> {
+            JSONStateManager.StateDelta current = jsm.getFullState();
+            if (current.sequence >= savedSequence) { checkpoint(current.state, current.sequence); }
+        });
+        try {
+            f.get();
+        } catch (Exception e) { Logger.printMessage("WARNING: Unable to auto-save scoreboard : " + e.getMessage()); }
+    }
+
+    // Writing and syncing can take a while on slow storage, so do it on our
+    // own thread rather than holding up the delivery pool.
+    @Override
+    public void sendUpdates(Map<String, Object> state, Set<String> changed, long sequence, Runnable done) {
+        executor.execute(() -> {
+            try {
+                save(state, changed, sequence);
+            } finally { done.run(); }
+        });
+    }
+
+    private void save(Map<String, Object> state, Set<String> changed, long sequence) {
+        // Already covered by a checkpoint.
+        if (sequence <= savedSequence) { return; }
+        if (journal == null || journalSize > MAX_JOURNAL_BYTES || System.currentTimeMillis() >= nextCheckpoint) {
+            checkpoint(state, sequence);
+            return;
+        }
+        Histogram.Timer timer = journalWriteDuration.startTimer();
+        try {
+            Map<String, Object> updates = new TreeMap<>();
+            for (String k : changed) { updates.put(k, state.get(k)); }
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("state", updates);
+            String line = JSON.std.with(JSON.Feature.WRITE_NULL_PROPERTIES).asString(entry) + "\n";
+            ByteBuffer b = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (b.hasRemaining()) { journal.write(b); }
+            journal.force(false);
+            journalSize += b.limit();
+            savedSequence = sequence;
+        } catch (IOException e) {
+            Logger.printMessage("Error writing auto-save journal: " + e.getMessage());
+            // Try to get back to a consistent state with a checkpoint next time.
+            closeJournal();
+        } finally { timer.observeDuration(); }
+    }
+
+    private void checkpoint(Map<String, Object> state, long sequence) {
         Histogram.Timer timer = autosaveDuration.startTimer();
+        nextCheckpoint = System.currentTimeMillis() + CHECKPOINT_SECONDS * 1000L;
         try {
-            int n = AUTOSAVE_FILES;
-            getFile(n).delete();
-            while (n > 0) {
-                File to = getFile(n);
-                File from = getFile(--n);
-                if (from.exists()) { from.renameTo(to); }
+            for (boolean b : new boolean[] {false, true}) {
+                int n = AUTOSAVE_FILES;
+                getFile(n, dir, b).delete();
+                while (n > 0) {
+                    File to = getFile(n, dir, b);
+                    File from = getFile(--n, dir, b);
+                    if (from.exists()) { from.renameTo(to); }
+                }
+            }
+            String journalName = "journal-" + sequence + ".jsonl";
+            if (writeAutoSave(getFile(0, dir, binary), state, journalName)) {
+                closeJournal();
+                journal = FileChannel.open(new File(dir, journalName).toPath(), StandardOpenOption.CREATE,
+                                           StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                journalSize = 0;
+                savedSequence = sequence;
+                // The previous checkpoint is older now, so its journal is no longer needed.
+                File[] old = dir.listFiles((d, name) -> isJournal(name) && !name.equals(journalName));
+                if (old != null) {
+                    for (File f : old) { f.delete(); }
+                }
             }
-            writeAutoSave(getFile(0));
         } catch (Exception e) { Logger.printMessage("WARNING: Unable to auto-save scoreboard : " + e.getMessage()); }
         timer.observeDuration();
     }
 
-    private void writeAutoSave(File file) {
+    private void closeJournal() {
+        if (journal == null) { return; }
+        try {
+            journal.close();
+        } catch (IOException e) {}
+        journal = null;
+    }
+
+    private boolean writeAutoSave(File file, Map<String, Object> state, String journalName) {
         File tmp = null;
-        OutputStreamWriter out = null;
+        FileOutputStream out = null;
         try {
-            String json = JSON.std.with(JSON.Feature.PRETTY_PRINT_OUTPUT)
-                              .composeString()
-                              .startObject()
-                              .putObject("state", new TreeMap<>(jsm.getState()))
-                              .end()
-                              .finish();
+            @SuppressWarnings("unchecked")
+            SortedMap<String, Object> sorted =
+                state instanceof SortedMap ? (SortedMap<String, Object>) state : new TreeMap<>(state);
             tmp = File.createTempFile(file.getName(), ".tmp", dir);
-            out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8);
-            out.write(json);
+            out = new FileOutputStream(tmp);
+            OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            if (binary) {
+                Map<String, Object> fields = new HashMap<>();
+                fields.put("journal", journalName);
+                fields.put("version", sorted.get("ScoreBoard.Version(release)"));
+                BinaryStateFormat.write(buffered, fields, sorted);
+            } else {
+                Map<String, Object> checkpoint = new LinkedHashMap<>();
+                checkpoint.put("state", sorted);
+                checkpoint.put("journal", journalName);
+                try (JsonGenerator g = JSON_FACTORY.createGenerator(buffered)) {
+                    g.useDefaultPrettyPrinter();
+                    JSON.std.write(checkpoint, g);
+                }
+            }
+            buffered.flush();
+            // The new journal only has the changes after this, so the
+            // checkpoint has to be on disk before it is used.
+            out.getFD().sync();
             out.close();
-            tmp.renameTo(file); // This is atomic.
-        } catch (Exception e) { Logger.printMessage("Error writing JSON autosave: " + e.getMessage()); } finally {
+            return tmp.renameTo(file); // This is atomic.
+        } catch (Exception e) {
+            Logger.printMessage("Error writing autosave: " + e.getMessage());
+            return false;
+        } finally {
             if (out != null) {
                 try {
                     out.close();
@@ -91,9 +215,14 @@ public class AutoSaveJSONState implements Runnable {
         if (backupDir.exists()) {
             Logger.printMessage("Could not back up auto-save files, backup directory already exists");
         } else {
-            int n = 0;
-            do {
-                File from = getFile(n);
+            List<File> files = new ArrayList<>();
+            for (int n = 0; n <= AUTOSAVE_FILES; n++) {
+                files.add(getFile(n, dir, false));
+                files.add(getFile(n, dir, true));
+            }
+            File[] journals = dir.listFiles((d, name) -> isJournal(name));
+            if (journals != null) { files.addAll(Arrays.asList(journals)); }
+            for (File from : files) {
                 if (from.exists()) {
                     try {
                         FileUtils.copyFileToDirectory(from, backupDir, true);
@@ -102,51 +231,124 @@ public class AutoSaveJSONState implements Runnable {
                                             "' : " + e.getMessage());
                     }
                 }
-            } while (n++ < AUTOSAVE_FILES);
+            }
         }
     }
 
-    public File getFile(int n) { return getFile(n, dir); }
-    public static File getFile(int n, File dir) {
-        return new File(dir, ("scoreboard-" + (n * INTERVAL_SECONDS) + "-secs-ago.json"));
+    private static boolean isJournal(String name) { return name.startsWith("journal-") && name.endsWith(".jsonl"); }
+
+    public File getFile(int n) { return getFile(n, dir, binary); }
+    public static File getFile(int n, File dir) { return getFile(n, dir, false); }
+    public static File getFile(int n, File dir, boolean binary) {
+        return new File(dir, ("scoreboard-" + (n * CHECKPOINT_SECONDS) + "-secs-ago" + (binary ? ".bin" : ".json")));
+    }
+
+    // The checkpoint n steps back, whichever format it was written in.
+    public static File findFile(int n, File dir) {
+        File json = getFile(n, dir, false);
+        File bin = getFile(n, dir, true);
+        if (!bin.exists()) { return json.exists() ? json : null; }
+        if (!json.exists()) { return bin; }
+        return bin.lastModified() >= json.lastModified() ? bin : json;
     }
 
     public static boolean loadAutoSave(ScoreBoard scoreBoard, File dir) {
         for (int i = 0; i <= AUTOSAVE_FILES; i++) {
-            File f = getFile(i, dir);
-            if (!f.exists()) { continue; }
+            File f = findFile(i, dir);
+            if (f == null) { continue; }
+            int aliasMark = scoreBoard.getAliasMark();
             try {
-                loadFile(scoreBoard, f, Source.AUTOSAVE);
+                ScoreBoardJSONSetter.Sets sets = new ScoreBoardJSONSetter.Sets(scoreBoard, Source.AUTOSAVE);
+                readAutoSave(f, (key, value) -> sets.set(key, value, null));
+                sets.finish();
                 Logger.printMessage("Loaded auto-saved scoreboard from " + f.getPath());
                 return true;
             } catch (Exception e) {
                 Logger.printMessage("Could not load auto-saved scoreboard JSON file " + f.getPath() + " : " +
                                     e.getMessage());
                 Logger.printStackTrace(e);
+            } finally {
+                // The ids from the file are only needed while it is read.
+                scoreBoard.cleanupAliasesSince(aliasMark);
             }
         }
 
         return false;
     }
 
-    public static void loadFile(ScoreBoard scoreBoard, File f, Source source) throws Exception {
-        Map<String, Object> map = JSON.std.mapFrom(f);
-        @SuppressWarnings("unchecked")
-        Map<String, Object> state = (Map<String, Object>) map.get("state");
+    // Passes the state from a checkpoint, with the changes from its journal applied, on to entries.
+    static void readAutoSave(File f, BiConsumer<String, Object> entries) throws IOException {
+        JSONStateFile checkpoint = new JSONStateFile(f);
+        Map<String, Object> changes = readJournal(f, checkpoint.getField("journal"));
+        checkpoint.read((key, value) -> {
+            if (changes.containsKey(key)) { value = changes.remove(key); }
+            if (value != null) { entries.accept(key, value); }
+        });
+        for (Map.Entry<String, Object> e : changes.entrySet()) {
+            if (e.getValue() != null) { entries.accept(e.getKey(), e.getValue()); }
+        }
+    }
+
+    // The last change to each key in the journal of the checkpoint f, null for removed keys.
+    private static Map<String, Object> readJournal(File f, Object name) throws IOException {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (!(name instanceof String)) { return changes; }
+        File journal = new File(f.getParentFile(), (String) name);
+        if (!journal.exists()) { return changes; }
 
-        ScoreBoardJSONSetter.updateToCurrentVersion(state);
-        ScoreBoardJSONSetter.set(scoreBoard, state, source);
+        int entries = 0;
+        try (BufferedReader in = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> c = (Map<String, Object>) JSON.std.mapFrom(line).get("state");
+                    changes.putAll(c);
+                } catch (IOException e) {
+                    // The last entry may have been cut short by a crash.
+                    Logger.printMessage("Ignoring incomplete entry at the end of " + journal.getPath());
+                    break;
+                }
+                entries++;
+            }
+        }
+        Logger.printMessage("Replayed " + entries + " changes from " + journal.getPath());
+        return changes;
+    }
+
+    public static void loadFile(ScoreBoard scoreBoard, File f, Source source) throws Exception {
+        int aliasMark = scoreBoard.getAliasMark();
+        try {
+            ScoreBoardJSONSetter.set(scoreBoard, new JSONStateFile(f), source);
+        } finally {
+            scoreBoard.cleanupAliasesSince(aliasMark);
+        }
     }
 
     private File dir;
     private JSONStateManager jsm;
-    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final boolean binary;
+    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Only used on the executor.
+    private FileChannel journal;
+    private long journalSize;
+    private long savedSequence = Long.MIN_VALUE;
+    private long nextCheckpoint;
 
     private static final int AUTOSAVE_FILES = 6;
-    private static final int INTERVAL_SECONDS = 10;
+    private static final int CHECKPOINT_SECONDS = 60;
+    private static final long MAX_JOURNAL_BYTES = 4 * 1024 * 1024;
+    // Closing the generator mustn't close the file before it is synced.
+    private static final JsonFactory JSON_FACTORY =
+        JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
 
     private static final Histogram autosaveDuration = Histogram.build()
                                                           .name("crg_json_autosave_write_duration_seconds")
                                                           .help("Time spent writing JSON autosaves to disk")
                                                           .register();
+    private static final Histogram journalWriteDuration =
+        Histogram.build()
+            .name("crg_json_autosave_journal_write_duration_seconds")
+            .help("Time spent appending and syncing a change set to the autosave journal")
+            .register();
 }
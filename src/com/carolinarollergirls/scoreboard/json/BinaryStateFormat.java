@@ -0,0 +1,230 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+/**
+ * A compact binary form of the state, for autosave checkpoints.
+ *
+ * Keys are written in sorted order, each as the length of the prefix it
+ * shares with the key before plus the rest of it. As most keys only differ
+ * from the one before in their last element, the repeated path prefixes are
+ * not stored again. The layout is:
+ *
+ *   "CRGS" FORMAT_VERSION
+ *   count, then count times: name, value   (top level fields)
+ *   count, then count times: shared, suffix, value   (state)
+ *   CRC32 of all of the above
+ *
+ * Counts and lengths are unsigned varints, strings are a length followed by
+ * UTF-8 and values are a tag byte followed by their data. Values other than
+ * strings, booleans, ints, longs and floating point numbers are stored as
+ * JSON, so reading gives the same as the JSON checkpoint would.
+ */
+final class BinaryStateFormat {
+    private BinaryStateFormat() {}
+
+    static void write(OutputStream os, Map<String, Object> fields, SortedMap<String, Object> state)
+        throws IOException {
+        CRC32 crc = new CRC32();
+        // Buffer before the checksum, so it is updated a block at a time.
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(os, crc), BUFFER));
+        out.write(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        writeVarint(out, fields.size());
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            writeString(out, e.getKey());
+            writeValue(out, e.getValue());
+        }
+        writeVarint(out, state.size());
+        String previous = "";
+        for (Map.Entry<String, Object> e : state.entrySet()) {
+            String key = e.getKey();
+            int shared = 0;
+            int max = Math.min(key.length(), previous.length());
+            while (shared < max && key.charAt(shared) == previous.charAt(shared)) { shared++; }
+            // Don't split a surrogate pair.
+            if (shared > 0 && Character.isHighSurrogate(key.charAt(shared - 1))) { shared--; }
+            writeVarint(out, shared);
+            writeString(out, key.substring(shared));
+            writeValue(out, e.getValue());
+            previous = key;
+        }
+        out.flush();
+        out.writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    static boolean isBinary(File f) throws IOException {
+        byte[] start = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(f)) {
+            int n = 0;
+            while (n < start.length) {
+                int r = in.read(start, n, start.length - n);
+                if (r < 0) { return false; }
+                n += r;
+            }
+        }
+        return Arrays.equals(start, MAGIC);
+    }
+
+    // Checks the whole file is intact and returns its top level fields.
+    static Map<String, Object> readFields(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = f.length();
+        if (length < MAGIC.length + 1 + 4) { throw new EOFException(f.getName() + " is truncated"); }
+        int expected;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), BUFFER))) {
+            byte[] buf = new byte[BUFFER];
+            long remaining = length - 4;
+            while (remaining > 0) {
+                int r = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (r < 0) { throw new EOFException(f.getName() + " is truncated"); }
+                crc.update(buf, 0, r);
+                remaining -= r;
+            }
+            expected = in.readInt();
+        }
+        if ((int) crc.getValue() != expected) { throw new IOException("Checksum mismatch in " + f.getName()); }
+
+        try (DataInputStream in = open(f)) { return readHeader(in); }
+    }
+
+    // Passes each entry of the state in f to entries, in order.
+    static void read(File f, BiConsumer<String, Object> entries) throws IOException {
+        try (DataInputStream in = open(f)) {
+            readHeader(in);
+            int count = readVarint(in);
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int shared = readVarint(in);
+                String key = previous.substring(0, shared).concat(readString(in));
+                entries.accept(key, readValue(in));
+                previous = key;
+            }
+        }
+    }
+
+    private static DataInputStream open(File f) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), BUFFER));
+        try {
+            byte[] start = new byte[MAGIC.length];
+            in.readFully(start);
+            if (!Arrays.equals(start, MAGIC)) { throw new IOException(f.getName() + " is not a binary state file"); }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary state version " + version + " in " + f.getName());
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private static Map<String, Object> readHeader(DataInputStream in) throws IOException {
+        Map<String, Object> fields = new HashMap<>();
+        int count = readVarint(in);
+        for (int i = 0; i < count; i++) { fields.put(readString(in), readValue(in)); }
+        return fields;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else {
+            out.writeByte(JSON_VALUE);
+            writeString(out, JSON.std.asString(value));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+        case NULL: return null;
+        case STRING: return readString(in);
+        case FALSE: return Boolean.FALSE;
+        case TRUE: return Boolean.TRUE;
+        case INT: return in.readInt();
+        case LONG: return in.readLong();
+        case DOUBLE: return in.readDouble();
+        case JSON_VALUE: return JSON.std.anyFrom(readString(in));
+        default: throw new IOException("Unknown value type " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[readVarint(in)];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) { return v; }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static final byte[] MAGIC = {'C', 'R', 'G', 'S'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER = 64 * 1024;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int STRING = 6;
+    private static final int JSON_VALUE = 7;
+}
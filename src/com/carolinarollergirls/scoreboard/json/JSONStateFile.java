@@ -0,0 +1,146 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.jr.ob.JSON;
+
+/**
+ * A saved scoreboard, read entry by entry so it never has to be held in
+ * memory as a whole.
+ *
+ * Opening the file scans it once, skipping over the values in "state" but
+ * noting its version and any other top level fields. read() then parses it
+ * again and passes each entry of "state", migrated to the current version,
+ * on as soon as it has been read. As the scan already parsed the whole file,
+ * a malformed file is rejected before any entry is passed on.
+ *
+ * Binary checkpoints (see BinaryStateFormat) are read the same way, with
+ * their checksum checked up front instead of the scan.
+ */
+public class JSONStateFile {
+    public JSONStateFile(File file) throws IOException {
+        this.file = file;
+        binary = BinaryStateFormat.isBinary(file);
+        if (binary) {
+            fields.putAll(BinaryStateFormat.readFields(file));
+            Object version = fields.get("version");
+            migration = version == null ? null : StateMigration.from(version.toString());
+            return;
+        }
+        String version = null;
+        boolean hasState = false;
+        StateMigration.VersionGuess guess = new StateMigration.VersionGuess();
+        try (JsonParser p = open()) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if (!field.equals("state")) {
+                    fields.put(field, readValue(p));
+                    continue;
+                }
+                expect(p, JsonToken.START_OBJECT);
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = p.getCurrentName();
+                    p.nextToken();
+                    if (key.equals(VERSION_KEY)) {
+                        version = String.valueOf(readValue(p));
+                    } else {
+                        if (version == null) { guess.add(key); }
+                        p.skipChildren();
+                    }
+                }
+                hasState = true;
+            }
+            expect(p, JsonToken.END_OBJECT);
+            p.nextToken();
+            expect(p, null);
+        }
+        if (!hasState) { throw new IOException("No state in " + file.getName()); }
+        migration = StateMigration.from(version == null ? guess.get() : version);
+    }
+
+    // A top level field other than state, or null if there is none.
+    public Object getField(String name) { return fields.get(name); }
+
+    // Passes each entry of state to entries, in the order they are in the file.
+    public void read(BiConsumer<String, Object> entries) throws IOException {
+        if (binary) {
+            BinaryStateFormat.read(file, (key, value) -> migrate(key, value, entries));
+            return;
+        }
+        try (JsonParser p = open()) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isState = p.getCurrentName().equals("state");
+                p.nextToken();
+                if (!isState) {
+                    p.skipChildren();
+                    continue;
+                }
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = p.getCurrentName();
+                    p.nextToken();
+                    migrate(key, readValue(p), entries);
+                }
+            }
+        }
+    }
+
+    private void migrate(String key, Object value, BiConsumer<String, Object> entries) {
+        if (migration != null) {
+            key = migration.migrateKey(key);
+            if (key == null) { return; }
+            value = migration.migrateValue(key, value);
+        }
+        entries.accept(key, value);
+    }
+
+    private JsonParser open() throws IOException {
+        JsonParser p = FACTORY.createParser(file);
+        try {
+            p.nextToken();
+            expect(p, JsonToken.START_OBJECT);
+        } catch (IOException e) {
+            p.close();
+            throw e;
+        }
+        return p;
+    }
+
+    private void expect(JsonParser p, JsonToken token) throws IOException {
+        if (p.currentToken() != token) {
+            throw new IOException("Unexpected " + p.currentToken() + " in " + file.getName() + " at " +
+                                  p.getCurrentLocation());
+        }
+    }
+
+    // The value the parser is at, in the same form JSON.std.mapFrom() would give.
+    private static Object readValue(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+        case VALUE_STRING: return p.getText();
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT: return p.getNumberValue();
+        case VALUE_TRUE: return Boolean.TRUE;
+        case VALUE_FALSE: return Boolean.FALSE;
+        case VALUE_NULL: return null;
+        default: return JSON.std.anyFrom(p);
+        }
+    }
+
+    private final File file;
+    private final boolean binary;
+    private final Map<String, Object> fields = new HashMap<>();
+    private final StateMigration migration;
+
+    private static final String VERSION_KEY = "ScoreBoard.Version(release)";
+    // Nearly all keys are unique and long, so canonicalizing them as field
+    // names costs far more than it saves.
+    private static final JsonFactory FACTORY =
+        JsonFactory.builder().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES).build();
+}
@@ -3,9 +3,15 @@ package com.carolinarollergirls.scoreboard.json;
 import java.util.Map;
 import java.util.Set;
 
-public interface JSONStateListener {
+public interface JSONStateListener extends AsyncJSONStateListener {
     // A snapshot of the current state, and which keys it it have changed.
     // Keys with a value of null are considered deleted, and will not be present
     // in state.
     public void sendUpdates(Map<String, Object> state, Set<String> changed);
+
+    @Override
+    public default void sendUpdates(Map<String, Object> state, Set<String> changed, long sequence, Runnable done) {
+        sendUpdates(state, changed);
+        done.run();
+    }
 }
@@ -1,5 +1,6 @@
 package com.carolinarollergirls.scoreboard.json;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -8,37 +9,70 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.carolinarollergirls.scoreboard.utils.Logger;
+import com.carolinarollergirls.scoreboard.utils.PersistentSortedMap;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 
 public class JSONStateManager {
 
-    public synchronized void register(JSONStateListener source) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        sources.put(source, executor);
+    public synchronized void register(AsyncJSONStateListener source) {
+        Mailbox mailbox = new Mailbox(source);
+        sources.put(source, mailbox);
         // Send on the current state asynchronously.
-        final Map<String, Object> localState = state;
-        pending.incrementAndGet();
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                source.sendUpdates(localState, localState.keySet());
-                pending.decrementAndGet();
-            }
-        });
+        mailbox.offer(state, state.keySet(), sequence);
+    }
+
+    /**
+     * Registers a listener for only the keys starting with one of prefixes.
+     * It is sent just the updates that change such keys, with changed
+     * holding only those keys.
+     */
+    public synchronized void register(AsyncJSONStateListener source, String... prefixes) {
+        Mailbox mailbox = new Mailbox(source);
+        rangeSources.put(source, new RangeSubscription(mailbox, prefixes));
+        Set<String> initial = new HashSet<>();
+        for (String prefix : prefixes) {
+            ranges.computeIfAbsent(prefix, k -> new ArrayList<>()).add(mailbox);
+            initial.addAll(state.subMap(prefix, prefix + '\uffff').keySet());
+        }
+        mailbox.offer(state, Collections.unmodifiableSet(initial), sequence);
     }
 
-    public synchronized void unregister(JSONStateListener source) {
-        sources.get(source).shutdownNow();
-        sources.remove(source);
+    public synchronized void unregister(AsyncJSONStateListener source) {
+        RangeSubscription subscription = rangeSources.remove(source);
+        if (subscription == null) {
+            sources.remove(source).close();
+            return;
+        }
+        for (String prefix : subscription.prefixes) {
+            List<Mailbox> mailboxes = ranges.get(prefix);
+            mailboxes.remove(subscription.mailbox);
+            if (mailboxes.isEmpty()) { ranges.remove(prefix); }
+        }
+        subscription.mailbox.close();
     }
 
+    /**
+     * Creates a mailbox on the delivery pool that isn't registered for
+     * updates, for listeners that get them routed from another listener.
+     */
+    public Mailbox createMailbox(AsyncJSONStateListener listener) { return new Mailbox(listener); }
+
     public void updateState(String key, Object value) {
         List<WSUpdate> updates = new ArrayList<>();
         updates.add(new WSUpdate(key, value));
@@ -48,30 +82,27 @@ public class JSONStateManager {
     public synchronized void updateState(List<WSUpdate> updates) {
         Histogram.Timer timer = updateStateDuration.startTimer();
         Set<String> changed = new HashSet<>();
-        Set<String> toRemove = new HashSet<>();
-        SortedMap<String, Object> newState = new TreeMap<>(state);
+        // Updates are applied to a persistent map, so only the touched paths are
+        // copied and the previous state remains a valid snapshot for listeners.
+        PersistentSortedMap<String, Object> newState = state;
 
         for (WSUpdate update : updates) {
+            String key = update.getKey();
             if (update.getValue() == null) {
-                String removedKey = update.getKey();
-                if (newState.containsKey(removedKey)) {
-                    toRemove.add(removedKey);
-                    changed.add(removedKey);
+                if (newState.containsKey(key)) {
+                    changed.add(key);
+                    newState = newState.minus(key);
                 }
-                for (String stateKey : newState.subMap(removedKey + ".", removedKey + "/").keySet()) {
-                    toRemove.add(stateKey);
+                for (String stateKey : newState.subMap(key + ".", key + "/").keySet()) {
                     changed.add(stateKey);
+                    newState = newState.minus(stateKey);
                 }
             } else {
-                changed.add(update.getKey());
-                toRemove.remove(update.getKey());
-                newState.put(update.getKey(), update.getValue());
+                changed.add(key);
+                newState = newState.plus(key, update.getValue());
             }
         }
 
-        // Modifications to the map have to be done after iteration.
-        for (String key : toRemove) { newState.remove(key); }
-
         // Discard noop changes.
         Iterator<String> it = changed.iterator();
         while (it.hasNext()) {
@@ -81,30 +112,88 @@ public class JSONStateManager {
             if (Objects.equals(cur, old)) { it.remove(); }
         }
 
-        state = Collections.unmodifiableSortedMap(newState);
+        state = newState;
         if (!changed.isEmpty()) {
             final Map<String, Object> localState = state;
             final Set<String> immutableChanged = Collections.unmodifiableSet(changed);
+            sequence++;
+            if (changed.size() > LOG_KEYS) {
+                // Clients that missed this get a full resync anyway, and so
+                // do those that missed anything before it.
+                log.clear();
+                logKeys = 0;
+            } else {
+                log.addLast(immutableChanged);
+                logKeys += changed.size();
+                while (logKeys > LOG_KEYS) { logKeys -= log.removeFirst().size(); }
+            }
 
             // Send updates async, as the WS connections can block if the
             // kernel TCP send buffer fills up.
-            for (JSONStateListener source : sources.keySet()) {
-                final JSONStateListener localSource = source;
-                pending.incrementAndGet();
-                sources.get(source).execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        localSource.sendUpdates(localState, immutableChanged);
-                        pending.decrementAndGet();
-                    }
-                });
+            for (Mailbox mailbox : sources.values()) { mailbox.offer(localState, immutableChanged, sequence); }
+            if (!ranges.isEmpty()) {
+                Map<Mailbox, Set<String>> routed = new HashMap<>();
+                for (String key : changed) { route(key, routed); }
+                for (Map.Entry<Mailbox, Set<String>> e : routed.entrySet()) {
+                    e.getKey().offer(localState, Collections.unmodifiableSet(e.getValue()), sequence);
+                }
             }
         }
         timer.observeDuration();
         updateStateUpdates.observe(updates.size());
     }
 
-    public synchronized Map<String, Object> getState() { return state; }
+    /**
+     * Adds key to the changes of every range listener with a prefix of key.
+     * Prefixes of key sort at or below it. If the closest prefix below key
+     * doesn't match, any that does is also a prefix of the part the two have
+     * in common, so the search continues from there.
+     */
+    private void route(String key, Map<Mailbox, Set<String>> routed) {
+        Map.Entry<String, List<Mailbox>> e = ranges.floorEntry(key);
+        while (e != null) {
+            String prefix = e.getKey();
+            if (key.startsWith(prefix)) {
+                for (Mailbox mailbox : e.getValue()) { routed.computeIfAbsent(mailbox, k -> new HashSet<>()).add(key); }
+                e = ranges.lowerEntry(prefix);
+            } else {
+                int common = 0;
+                while (common < prefix.length() && prefix.charAt(common) == key.charAt(common)) { common++; }
+                e = ranges.floorEntry(key.substring(0, common));
+            }
+        }
+    }
+
+    public synchronized SortedMap<String, Object> getState() { return state; }
+
+    // The current state, with all keys as changed.
+    public synchronized StateDelta getFullState() { return new StateDelta(state, state.keySet(), sequence); }
+
+    /**
+     * The current state and the keys changed since the state numbered since,
+     * for a client that has seen that state and wants to catch up. Null if
+     * since is older than the log or unknown, then the client needs the full
+     * state.
+     */
+    public synchronized StateDelta getStateSince(long since) {
+        if (since > sequence || since < sequence - log.size()) { return null; }
+        Set<String> changed = new HashSet<>();
+        Iterator<Set<String>> it = log.descendingIterator();
+        for (long s = sequence; s > since; s--) { changed.addAll(it.next()); }
+        return new StateDelta(state, Collections.unmodifiableSet(changed), sequence);
+    }
+
+    public static final class StateDelta {
+        private StateDelta(SortedMap<String, Object> state, Set<String> changed, long sequence) {
+            this.state = state;
+            this.changed = changed;
+            this.sequence = sequence;
+        }
+
+        public final SortedMap<String, Object> state;
+        public final Set<String> changed;
+        public final long sequence;
+    }
 
     // For unittests.
     protected void waitForSent() {
@@ -115,10 +204,160 @@ public class JSONStateManager {
         }
     }
 
-    private Map<JSONStateListener, ExecutorService> sources = new HashMap<>();
-    private SortedMap<String, Object> state = new TreeMap<>();
+    private static ExecutorService createDeliveryPool() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "JSON delivery " + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Delivers updates to one listener on the shared delivery pool.
+     *
+     * At most one delivery is queued or in progress per listener, which keeps
+     * them in order. Updates that arrive meanwhile are merged into the next
+     * one, which then carries the newest state and the union of the changed
+     * keys. So a slow client catches up in one go, instead of piling up old
+     * snapshots. A delivery is only over once the listener says it's done, so
+     * listeners can send asynchronously without holding on to a pool thread.
+     *
+     * Offers may come from several threads, e.g. a registration racing with
+     * routed updates. An offer of an older state than the newest seen so far
+     * only adds its keys, their values are taken from the newer state.
+     */
+    public final class Mailbox implements Runnable {
+        private Mailbox(AsyncJSONStateListener listener) { this.listener = listener; }
+
+        public synchronized void offer(Map<String, Object> newState, Set<String> newChanged, long newSequence) {
+            if (closed) { return; }
+            if (state == null || newSequence >= sequence) {
+                state = newState;
+                sequence = newSequence;
+            }
+            if (changed == null) {
+                changed = newChanged;
+            } else {
+                if (!ownChanged) {
+                    changed = new HashSet<>(changed);
+                    ownChanged = true;
+                }
+                changed.addAll(newChanged);
+                mergedUpdates.inc();
+            }
+            if (!scheduled) {
+                scheduled = true;
+                schedule();
+            }
+        }
+
+        @Override
+        public void run() {
+            Map<String, Object> localState;
+            Set<String> localChanged;
+            long localSequence;
+            synchronized (this) {
+                localState = state;
+                localChanged = ownChanged ? Collections.unmodifiableSet(changed) : changed;
+                localSequence = sequence;
+                changed = null;
+                ownChanged = false;
+            }
+            final AtomicBoolean finished = new AtomicBoolean();
+            Runnable done = new Runnable() {
+                @Override
+                public void run() {
+                    if (finished.compareAndSet(false, true)) { delivered(); }
+                }
+            };
+            try {
+                if (!closed) {
+                    listener.sendUpdates(localState, localChanged, localSequence, done);
+                } else {
+                    done.run();
+                }
+            } catch (RuntimeException e) {
+                Logger.printStackTrace(e);
+                done.run();
+            }
+        }
+
+        private void delivered() {
+            synchronized (this) {
+                if (changed != null && !closed) {
+                    schedule();
+                } else {
+                    scheduled = false;
+                }
+            }
+            pending.decrementAndGet();
+            queuedDeliveries.dec();
+        }
+
+        private void schedule() {
+            pending.incrementAndGet();
+            queuedDeliveries.inc();
+            deliveryPool.execute(this);
+        }
+
+        public synchronized void close() { closed = true; }
+
+        private final AsyncJSONStateListener listener;
+        // The newest state offered, kept after delivery.
+        private Map<String, Object> state;
+        private long sequence;
+        private Set<String> changed;
+        private boolean ownChanged;
+        private boolean scheduled;
+        private volatile boolean closed;
+    }
+
+    private static final class RangeSubscription {
+        private RangeSubscription(Mailbox mailbox, String[] prefixes) {
+            this.mailbox = mailbox;
+            this.prefixes = prefixes;
+        }
+
+        private final Mailbox mailbox;
+        private final String[] prefixes;
+    }
+
+    private Map<AsyncJSONStateListener, Mailbox> sources = new HashMap<>();
+    private Map<AsyncJSONStateListener, RangeSubscription> rangeSources = new HashMap<>();
+    // Mailboxes of range listeners by prefix.
+    private TreeMap<String, List<Mailbox>> ranges = new TreeMap<>();
+    private PersistentSortedMap<String, Object> state = PersistentSortedMap.empty();
+    // Numbers the versions of state. Starts at a random point below 2^51, so
+    // a number a client kept from before a restart is almost certainly not in
+    // the log and it gets a full resync.
+    private long sequence = (new Random().nextLong() >>> 13);
+    // The keys changed by each of the last versions, newest last. Holds at
+    // most LOG_KEYS keys in total, so a large import doesn't stay in memory.
+    private final ArrayDeque<Set<String>> log = new ArrayDeque<>();
+    private int logKeys = 0;
     private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService deliveryPool = createDeliveryPool();
 
+    static final int LOG_KEYS = 20000;
+
+    private static final Gauge queuedDeliveries =
+        Gauge.build()
+            .name("crg_json_listener_queued_deliveries")
+            .help("Deliveries of state updates to listeners that are queued or running, at most one per listener")
+            .register();
+    private static final Counter mergedUpdates =
+        Counter.build()
+            .name("crg_json_listener_merged_updates")
+            .help("State updates merged into an already queued delivery instead of being sent separately")
+            .register();
     private static final Histogram updateStateDuration =
         Histogram.build()
             .name("crg_json_update_state_duration_seconds")
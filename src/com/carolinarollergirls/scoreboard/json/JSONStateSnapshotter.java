@@ -2,99 +2,204 @@ package com.carolinarollergirls.scoreboard.json;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.jr.ob.JSON;
+import com.fasterxml.jackson.jr.ob.JSONComposer;
+import com.fasterxml.jackson.jr.ob.comp.ObjectComposer;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.Game;
 import com.carolinarollergirls.scoreboard.utils.BasePath;
 import com.carolinarollergirls.scoreboard.utils.Logger;
 
+import io.prometheus.client.Counter;
 import io.prometheus.client.Histogram;
 
+/**
+ * Keeps html/game-data/json/ up to date with the state of one game.
+ *
+ * The snapshotter is only sent updates for its game's keys, and just notes
+ * that the game changed. Writes run on a shared background thread, at most
+ * one per game every MIN_WRITE_INTERVAL_MS. Requests that come in before
+ * then are coalesced into one write of the state current at that time.
+ * Writes that are still pending at shutdown are done by flushAll().
+ */
 public class JSONStateSnapshotter implements JSONStateListener {
 
     public JSONStateSnapshotter(JSONStateManager jsm, Game g) {
-        this.directory = BasePath.get();
-        game = g;
-        pathPrefix = "ScoreBoard.Game(" + game.getId() + ")";
-        jsm.register(this);
+        this.jsm = jsm;
+        pathPrefix = "ScoreBoard.Game(" + g.getId() + ")";
+        jsm.register(this, pathPrefix, VERSION_PREFIX);
+        live.add(this);
     }
 
     @Override
-    public synchronized void sendUpdates(Map<String, Object> newState, Set<String> changed) {
-        boolean initialUpdate = state.isEmpty();
-        if (initialUpdate) {
-            for (String key : changed) {
-                if (key.startsWith(pathPrefix) || key.startsWith("ScoreBoard.Version")) {
-                    state.put(key, newState.get(key));
-                }
-            }
-        } else {
-            for (String key : changed) {
-                if (key.startsWith(pathPrefix)) { state.put(key, newState.get(key)); }
-            }
-        }
-        if (writeOnNextUpdate) {
+    public void sendUpdates(Map<String, Object> newState, Set<String> changed) {
+        synchronized (this) {
+            dirty = true;
+            if (!writeOnNextUpdate) { return; }
             writeOnNextUpdate = false;
-            writeFile();
         }
+        scheduleWrite();
+    }
+
+    public synchronized void writeOnNextUpdate() { writeOnNextUpdate = true; }
+
+    // Writes the current state of the game soon, even if it's unchanged.
+    public void writeFile() {
+        synchronized (this) { dirty = true; }
+        scheduleWrite();
+    }
+
+    private synchronized void scheduleWrite() {
+        if (writeScheduled) {
+            coalescedWrites.inc();
+            return;
+        }
+        writeScheduled = true;
+        long delay = Math.max(0, lastWrite + MIN_WRITE_INTERVAL_MS - System.currentTimeMillis());
+        writer.schedule(this::write, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        synchronized (this) {
+            writeScheduled = false;
+            if (!dirty || closed) { return; }
+            dirty = false;
+            lastWrite = System.currentTimeMillis();
+        }
+        writeState();
     }
 
-    public void writeOnNextUpdate() { writeOnNextUpdate = true; }
+    /**
+     * Writes the current state of the game right away, on the calling thread.
+     * Returns whether the snapshot is on disk.
+     */
+    public boolean writeNow() {
+        synchronized (this) {
+            if (closed) { return false; }
+            dirty = false;
+            lastWrite = System.currentTimeMillis();
+        }
+        return writeState();
+    }
 
-    public synchronized void writeFile() {
+    // Stops writing snapshots, e.g. as the game is going away.
+    public void close() {
+        synchronized (this) {
+            if (closed) { return; }
+            closed = true;
+        }
+        live.remove(this);
+        jsm.unregister(this);
+    }
+
+    /**
+     * Does the writes that are scheduled or asked for on the next update
+     * right away, on the calling thread. The writer thread is a daemon, so
+     * this is needed to not lose them at shutdown.
+     */
+    public static void flushAll() {
+        for (JSONStateSnapshotter s : live) {
+            synchronized (s) {
+                if (!s.writeScheduled && !s.writeOnNextUpdate) { continue; }
+                s.writeOnNextUpdate = false;
+            }
+            s.writeNow();
+        }
+    }
+
+    // Where the snapshot of a game with the given Filename is kept.
+    public static File getFile(String filename) {
+        return new File(BasePath.get(), "html/game-data/json/" + filename + ".json");
+    }
+
+    private boolean writeState() {
+        SortedMap<String, Object> state = jsm.getState();
+        // Taken from the state rather than the game, so no core lock is needed.
+        String filename = (String) state.get(pathPrefix + ".Filename");
+        if (filename == null) { return false; } // the game is gone
+        // Writes and the renames around them must not overlap.
+        synchronized (writeLock) { return writeState(state, filename); }
+    }
+
+    private boolean writeState(SortedMap<String, Object> state, String filename) {
         Histogram.Timer timer = updateStateDuration.startTimer();
 
-        File file = new File(new File(directory, "html/game-data/json"), game.getFilename() + ".json");
-        File prev = new File(new File(directory, "html/game-data/json"), game.getFilename() + "_prev.json");
-        file.getParentFile().mkdirs();
+        File file = getFile(filename);
+        File dir = file.getParentFile();
+        File prev = new File(dir, filename + "_prev.json");
+        File tmp = new File(dir, filename + ".json.tmp");
+        dir.mkdirs();
 
-        File tmp = null;
-        OutputStreamWriter out = null;
-        try {
+        try (OutputStream out = new FileOutputStream(tmp)) {
             // Put inside a "state" entry to match the WS.
-            String json = JSON.std.with(JSON.Feature.PRETTY_PRINT_OUTPUT)
-                              .composeString()
-                              .startObject()
-                              .putObject("state", state)
-                              .end()
-                              .finish();
-            tmp = File.createTempFile(file.getName(), ".tmp", directory);
-            out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8);
-            out.write(json);
-            out.close();
-            prev.delete();
-            file.renameTo(prev);
-            if (tmp.renameTo(file)) { prev.delete(); }
-        } catch (Exception e) { Logger.printMessage("Error writing JSON snapshot: " + e.getMessage()); } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (Exception e) {}
-            }
-            if (tmp != null) {
-                try {
-                    tmp.delete();
-                } catch (Exception e) {}
+            ObjectComposer<ObjectComposer<JSONComposer<OutputStream>>> composer =
+                JSON.std.with(JSON.Feature.PRETTY_PRINT_OUTPUT).composeTo(out).startObject().startObjectField("state");
+            // The game sorts before the version, as in a sorted map of both.
+            for (String prefix : new String[] {pathPrefix, VERSION_PREFIX}) {
+                for (Map.Entry<String, Object> e : state.subMap(prefix, prefix + '\uffff').entrySet()) {
+                    composer.putObject(e.getKey(), e.getValue());
+                }
             }
+            composer.end().end().finish();
+        } catch (Exception e) {
+            Logger.printMessage("Error writing JSON snapshot: " + e.getMessage());
+            tmp.delete();
+            timer.observeDuration();
+            return false;
         }
+        // Keep the previous snapshot until the new one is in place.
+        prev.delete();
+        file.renameTo(prev);
+        boolean written = tmp.renameTo(file);
+        if (written) { prev.delete(); }
+        tmp.delete();
         timer.observeDuration();
+        return written;
     }
 
-    private File directory;
-    private Game game;
+    private static ScheduledExecutorService createWriter() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "JSON snapshot writer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private JSONStateManager jsm;
     private String pathPrefix;
+    private final Object writeLock = new Object();
     private boolean writeOnNextUpdate = false;
-    // Use a TreeMap so output is sorted.
-    private Map<String, Object> state = new TreeMap<>();
+    private boolean closed = false;
+    // Whether the game changed since the last write started.
+    private boolean dirty = false;
+    private boolean writeScheduled = false;
+    private long lastWrite = 0;
+
+    private static final String VERSION_PREFIX = "ScoreBoard.Version";
+    private static final long MIN_WRITE_INTERVAL_MS = 1000;
+    private static final ScheduledExecutorService writer = createWriter();
+    // Snapshotters that haven't been closed.
+    private static final Set<JSONStateSnapshotter> live = ConcurrentHashMap.newKeySet();
 
     private static final Histogram updateStateDuration = Histogram.build()
                                                              .name("crg_json_state_disk_snapshot_duration_seconds")
                                                              .help("Time spent writing JSON state snapshots to disk")
                                                              .register();
+    private static final Counter coalescedWrites =
+        Counter.build()
+            .name("crg_json_state_disk_snapshot_coalesced")
+            .help("Requests for a JSON state snapshot merged into one that was already pending")
+            .register();
 }
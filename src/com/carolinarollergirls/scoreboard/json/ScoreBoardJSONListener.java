@@ -39,14 +39,14 @@ public class ScoreBoardJSONListener implements ScoreBoardListener {
                 } else if (prop == ScoreBoardEventProviderImpl.BATCH_END) {
                     if (batch > 0) { batch--; }
                 } else if (prop instanceof Value) {
-                    update(getPath(p), prop, v);
+                    update(p, prop, v);
                 } else if (prop instanceof Child) {
                     if (v instanceof ScoreBoardEventProvider && ((ScoreBoardEventProvider) v).getParent() == p) {
                         process((ScoreBoardEventProvider) v, rem);
                     } else if (rem) {
-                        remove(getPath(p), prop, ((ValueWithId) v).getId());
+                        remove(p, prop, ((ValueWithId) v).getId());
                     } else {
-                        update(getPath(p), prop, v);
+                        update(p, prop, v);
                     }
                 } else {
                     Logger.printMessage(provider + " update of unknown kind.	prop: " + prop.getJsonName() +
@@ -66,8 +66,8 @@ public class ScoreBoardJSONListener implements ScoreBoardListener {
         }
     }
 
-    private void update(String prefix, Property<?> prop, Object v) {
-        String path = prefix + "." + prop.getJsonName();
+    private void update(ScoreBoardEventProvider p, Property<?> prop, Object v) {
+        String path = p.getPath(prop);
         if (prop instanceof Child) {
             updates.add(new WSUpdate(path + "(" + ((ValueWithId) v).getId() + ")", ((ValueWithId) v).getValue()));
         } else if (v instanceof ScoreBoardEventProvider) {
@@ -79,8 +79,8 @@ public class ScoreBoardJSONListener implements ScoreBoardListener {
         }
     }
 
-    private void remove(String prefix, Property<?> prop, String id) {
-        String path = prefix + "." + prop.getJsonName() + "(" + id + ")";
+    private void remove(ScoreBoardEventProvider p, Property<?> prop, String id) {
+        String path = p.getPath(prop) + "(" + id + ")";
         updates.add(new WSUpdate(path, null));
     }
 
@@ -93,13 +93,13 @@ public class ScoreBoardJSONListener implements ScoreBoardListener {
             if (prop instanceof Value) {
                 Object v = p.get((Value<?>) prop);
                 if (v == null) { v = ""; }
-                update(path, prop, v);
+                update(p, prop, v);
             } else if (prop instanceof Child) {
                 for (ValueWithId c : p.getAll((Child<?>) prop)) {
                     if (c instanceof ScoreBoardEventProvider && ((ScoreBoardEventProvider) c).getParent() == p) {
                         process((ScoreBoardEventProvider) c, false);
                     } else {
-                        update(getPath(p), prop, c);
+                        update(p, prop, c);
                     }
                 }
             }
@@ -117,13 +117,7 @@ public class ScoreBoardJSONListener implements ScoreBoardListener {
         updateState();
     }
 
-    String getPath(ScoreBoardEventProvider p) {
-        String path = "";
-        if (p.getParent() != null) { path = getPath(p.getParent()) + "."; }
-        path = path + p.getProviderName();
-        if (!"".equals(p.getProviderId()) && p.getProviderId() != null) { path = path + "(" + p.getProviderId() + ")"; }
-        return path;
-    }
+    String getPath(ScoreBoardEventProvider p) { return p.getPath(); }
 
     private JSONStateManager jsm;
     private List<WSUpdate> updates = new LinkedList<>();
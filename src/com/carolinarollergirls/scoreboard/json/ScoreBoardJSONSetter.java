@@ -1,13 +1,11 @@
 package com.carolinarollergirls.scoreboard.json;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.carolinarollergirls.scoreboard.core.interfaces.Clients;
 import com.carolinarollergirls.scoreboard.core.interfaces.CurrentGame;
@@ -29,214 +27,230 @@ import com.carolinarollergirls.scoreboard.utils.ValWithId;
  */
 public class ScoreBoardJSONSetter {
 
-    // check the version of the incoming update and update if necessary
-    public static void updateToCurrentVersion(Map<String, Object> state) {
+    // check the version of the incoming update and update if necessary,
+    // returns the updated state which may be the same map
+    public static Map<String, Object> updateToCurrentVersion(Map<String, Object> state) {
         String version = (String) state.get("ScoreBoard.Version(release)");
-        if (version == null) { version = getVersionFromKeys(state.keySet()); }
-
-        if (version.equals("v5")) { return; } // no update needed
-
-        // When updating to v5 we need to move stuff to a newly created game which needs an id
-        String newGameId = UUID.randomUUID().toString();
-
-        for (String oldKey : new HashSet<>(state.keySet())) {
-            String newKey = oldKey;
-            String keyVersion = version;
-
-            if (keyVersion.equals("v4")) {
-                if ((newKey.startsWith("ScoreBoard.Clock(") && newKey.endsWith(".MinimumTime"))) {
-                    newKey = "";
-                } else if (newKey.startsWith("ScoreBoard.Team(") && newKey.endsWith(".LastEndedTeamJam")) {
-                    newKey = "";
-                } else if (newKey.endsWith(".Number") &&
-                           (newKey.contains(".Position(") || newKey.contains(".Skater(")) &&
-                           !newKey.contains(".Penalty(")) {
-                    newKey = newKey.replace(".Number", ".RosterNumber");
-                }
-                keyVersion = "v4.1";
-            }
-
-            if (keyVersion.equals("v4.1")) {
-                if (newKey.startsWith("ScoreBoard.Rulesets.CurrentRule(")) {
-                    newKey =
-                        newKey.replace("ScoreBoard.Rulesets.CurrentRule(", "ScoreBoard.Game(" + newGameId + ").Rule(");
-                } else if (newKey.startsWith("ScoreBoard.Rulesets.Current") ||
-                           newKey.startsWith("ScoreBoard.Rulesets.RuleDefinition(")) {
-                    newKey = "";
-                } else if (newKey.startsWith("ScoreBoard.Rulesets.Ruleset(") && newKey.endsWith(".ParentId")) {
-                    newKey = newKey.replace(".ParentId", ".Parent");
-                } else if (newKey.startsWith("ScoreBoard.PenaltyCodes.Code(")) {
-                    newKey = newKey.replace("ScoreBoard.PenaltyCodes.Code(",
-                                            "ScoreBoard.Game(" + newGameId + ").PenaltyCode(");
-                } else if (newKey.equals("ScoreBoard.Team(1).Name") || newKey.equals("ScoreBoard.Team(2).Name")) {
-                    newKey = newKey.replace("ScoreBoard.", "ScoreBoard.Game(" + newGameId + ").")
-                                 .replace(".Name", ".TeamName");
-                } else if (newKey.startsWith("ScoreBoard.Clock(") || newKey.startsWith("ScoreBoard.Period(") ||
-                           newKey.startsWith("ScoreBoard.Jam(") || newKey.startsWith("ScoreBoard.Team(") ||
-                           newKey.equals("ScoreBoard.CurrentPeriodNumber") ||
-                           newKey.equals("ScoreBoard.CurrentPeriod") || newKey.equals("ScoreBoard.UpcomingJam") ||
-                           newKey.equals("ScoreBoard.UpcomingJamNumber") || newKey.equals("ScoreBoard.InPeriod") ||
-                           newKey.equals("ScoreBoard.InJam") || newKey.equals("ScoreBoard.InOvertime") ||
-                           newKey.equals("ScoreBoard.OfficialScore") || newKey.equals("ScoreBoard.CurrentTimeout") ||
-                           newKey.equals("ScoreBoard.TimeoutOwner") || newKey.equals("ScoreBoard.OfficialReview") ||
-                           newKey.equals("ScoreBoard.NoMoreJam")) {
-                    newKey = newKey.replace("ScoreBoard.", "ScoreBoard.Game(" + newGameId + ").");
-                } else if (newKey.startsWith("ScoreBoard.PreparedTeam") && newKey.endsWith(".Name") &&
-                           !newKey.contains("Skater")) {
-                    newKey = newKey.replace(".Name", ".TeamName");
-                }
+        if (version == null) { version = StateMigration.versionFromKeys(state.keySet()); }
 
-                // changed values
-                if (newKey.contains(".Skater(") && newKey.endsWith(".Flags")) {
-                    String oldValue = (String) state.get(oldKey);
-                    if ("BC".equals(oldValue)) { state.put(oldKey, "BA"); }
-                    if ("AC".equals(oldValue)) { state.put(oldKey, "A"); }
-                }
-                keyVersion = "v5";
-            }
+        StateMigration migration = StateMigration.from(version);
+        if (migration == null) { return state; } // no update needed
 
-            if (!newKey.equals(oldKey)) {
-                if (!newKey.equals("")) { state.put(newKey, state.get(oldKey)); }
-                state.remove(oldKey);
-            }
+        Map<String, Object> updated = new LinkedHashMap<>(state.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> e : state.entrySet()) {
+            String key = migration.migrateKey(e.getKey());
+            if (key != null) { updated.put(key, migration.migrateValue(key, e.getValue())); }
         }
+        return updated;
     }
 
-    private static String getVersionFromKeys(Set<String> keys) {
-        String minVersion = "v4"; // lowest version possible from the keys seen so far
-        String maxVersion = "v5"; // highest version possible from the keys seen so far
+    // Make a list of sets to a scoreboard, with JSON paths to fields.
+    public static void set(ScoreBoard sb, Map<String, Object> state, Source source) {
+        Sets sets = new Sets(sb, source);
+        for (Map.Entry<String, Object> e : state.entrySet()) { sets.set(e.getKey(), e.getValue(), null); }
+        sets.finish();
+    }
 
-        for (String key : keys) {
-            minVersion = minVersionWith(key, minVersion);
-            maxVersion = maxVersionWith(key, maxVersion);
-            if (minVersion.equals(maxVersion)) return minVersion;
-        }
-        // return highest possible version so unaplicable updates are skippped
-        return maxVersion;
+    // Set the state saved in a file, as it is read.
+    public static void set(ScoreBoard sb, JSONStateFile file, Source source) throws IOException {
+        Sets sets = new Sets(sb, source);
+        file.read((key, value) -> sets.set(key, value, null));
+        sets.finish();
     }
 
-    private static String minVersionWith(String key, String priorLimit) {
-        if (priorLimit.equals("v5") || key.startsWith("ScoreBoard.Game(") ||
-            key.startsWith("ScoreBoard.CurrentGame.")) {
-            return "v5";
-        }
-        if (priorLimit.equals("v4.1") || key.startsWith("ScoreBoard.Clients.") || key.endsWith(".RosterNumber") ||
-            key.endsWith(".ReadOnly") || (key.endsWith(".Annotation") && key.contains(".ScoringTrip("))) {
-            return "v4.1";
-        }
-        return priorLimit;
+    public static void set(ScoreBoard sb, List<JSONSet> jsl, Source source) {
+        Sets sets = new Sets(sb, source);
+        for (JSONSet s : jsl) { sets.set(s.path, s.value, s.flag); }
+        sets.finish();
     }
-    private static String maxVersionWith(String key, String priorLimit) {
-        if (priorLimit.equals("v4") || (key.startsWith("ScoreBoard.Clock(") && key.endsWith(".MinimumTime")) ||
-            (key.startsWith("ScoreBoard.Team(") && key.endsWith(".LastEndedTeamJam")) ||
-            (key.endsWith(".Number") && (key.contains(".Position(") || key.contains(".Skater(")))) {
-            return "v4";
-        }
-        if (priorLimit.equals("v4.1") || key.startsWith("ScoreBoard.Clock(") || key.startsWith("ScoreBoard.Period(") ||
-            key.startsWith("ScoreBoard.Jam(") || key.startsWith("ScoreBoard.Team(") ||
-            key.startsWith("ScoreBoard.PenaltyCodes.") || key.startsWith("ScoreBoard.Rulesets.Current") ||
-            (key.startsWith("ScoreBoard.Rulesets.Ruleset(") && key.endsWith(".ParentId")) ||
-            key.equals("ScoreBoard.CurrentPeriodNumber") || key.equals("ScoreBoard.CurrentPeriod") ||
-            key.equals("ScoreBoard.UpcomingJam") || key.equals("ScoreBoard.UpcomingJamNumber") ||
-            key.equals("ScoreBoard.InPeriod") || key.equals("ScoreBoard.InJam") ||
-            key.equals("ScoreBoard.InOvertime") || key.equals("ScoreBoard.OfficialScore") ||
-            key.equals("ScoreBoard.CurrentTimeout") || key.equals("ScoreBoard.TimeoutOwner") ||
-            key.equals("ScoreBoard.OfficialReview") || key.equals("ScoreBoard.NoMoreJam")) {
-            return "v4.1";
+
+    /**
+     * Sets made one at a time, e.g. while reading a file. Values other than
+     * IDs are only set by finish(), as they may reference elements that are
+     * created by later sets.
+     */
+    public static final class Sets {
+        public Sets(ScoreBoard sb, Source source) {
+            this.sb = sb;
+            this.source = source;
         }
-        return priorLimit;
-    }
 
-    // Make a list of sets to a scoreboard, with JSON paths to fields.
-    public static void set(ScoreBoard sb, Map<String, Object> state, Source source) {
-        List<JSONSet> jsl = new ArrayList<>();
-        for (String key : state.keySet()) {
-            Object value = state.get(key);
-            String v;
-            if (value == null) {
-                v = null;
+        public void set(String path, Object value, Flag flag) {
+            if (path.startsWith("ScoreBoard.")) {
+                ScoreBoardJSONSetter.set(sb, path, ROOT_LENGTH, value == null ? null : value.toString(), source,
+                                         flag, postponedSets, resolved);
             } else {
-                v = value.toString();
+                Logger.printMessage("Illegal path: " + path);
             }
-            jsl.add(new JSONSet(key, v, null));
         }
-        ScoreBoardJSONSetter.set(sb, jsl, source);
-    }
 
-    public static void set(ScoreBoard sb, List<JSONSet> jsl, Source source) {
-        List<PropertySet> postponedSets = new ArrayList<>();
-        for (JSONSet s : jsl) {
-            Matcher m = pathElementPattern.matcher(s.path);
-            if (m.matches() && m.group("name").equals("ScoreBoard") && m.group("id") == null &&
-                m.group("remainder") != null) {
-                set(sb, m.group("remainder"), s.value, source, s.flag, postponedSets);
-            } else {
-                Logger.printMessage("Illegal path: " + s.path);
-            }
+        public void finish() {
+            for (PropertySet vs : postponedSets) { vs.process(); }
+            postponedSets.clear();
         }
-        for (PropertySet vs : postponedSets) { vs.process(); }
+
+        private final ScoreBoard sb;
+        private final Source source;
+        private final List<PropertySet> postponedSets = new ArrayList<>();
+        private final ResolvedPath resolved = new ResolvedPath();
     }
 
+    /**
+     * Sets the element at path, starting at index start, below p.
+     *
+     * Elements are of the form Name, Name(id) or either followed by a dot and
+     * the path below the element. Child elements are looked up or created on
+     * the way down. If resolved is given, the lookup starts at the deepest
+     * provider already resolved for a prefix of path by the previous call.
+     */
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private static void set(ScoreBoardEventProvider p, String path, String value, Source source, Flag flag,
-                            List<PropertySet> postponedSets) {
-        Matcher m = pathElementPattern.matcher(path);
-        if (m.matches()) {
-            String name = m.group("name");
-            String elementId = m.group("id");
-            String remainder = m.group("remainder");
-            if (elementId == null) { elementId = ""; }
-            String readable = p.getProviderName() + "(" + p.getProviderId() + ")." + name + "(" + elementId + ")";
+    private static void set(ScoreBoardEventProvider p, String path, int start, String value, Source source,
+                            Flag flag, List<PropertySet> postponedSets, ResolvedPath resolved) {
+        if (resolved != null) {
+            int depth = resolved.reuse(path);
+            if (depth > 0) {
+                p = resolved.providers[depth - 1];
+                start = resolved.ends[depth - 1] + 1;
+            }
+        }
+        while (true) {
+            int nameEnd = start;
+            while (nameEnd < path.length() && isWordChar(path.charAt(nameEnd))) { nameEnd++; }
+            int end = nameEnd;
+            int idEnd = -1;
+            if (end < path.length() && path.charAt(end) == '(') {
+                idEnd = path.indexOf(')', end + 1);
+                end = idEnd < 0 ? -1 : idEnd + 1;
+            }
+            if (nameEnd == start || end < 0 || (end < path.length() && path.charAt(end) != '.')) {
+                Logger.printMessage("Illegal path element: " + path.substring(start));
+                return;
+            }
+            String name = path.substring(start, nameEnd);
+            String elementId = idEnd < 0 ? "" : path.substring(nameEnd + 1, idEnd);
+            boolean hasRemainder = end < path.length();
             try {
                 Property prop = p.getProperty(name);
                 if (prop == null) {
-                    Logger.printMessage("Unknown property " + readable);
+                    Logger.printMessage("Unknown property " + readable(p, name, elementId));
                     return;
                 }
 
                 if (prop == ScoreBoardEventProvider.ID) {
+                    if (resolved != null) { resolved.clear(); }
                     p.set((Value) prop, p.valueFromString((Value) prop, value), source, flag);
                 } else if (prop instanceof Value) {
                     // postpone setting PermanentProperties except ID, as they may reference
                     // elements not yet created when restoring from autosave
                     postponedSets.add(new ValueSet(p, (Value) prop, value, source, flag));
                 } else if (prop instanceof Command) {
-                    if (Boolean.parseBoolean(value)) { p.execute((Command) prop, source); }
-                } else if (remainder != null) {
-                    @SuppressWarnings("unchecked")
-                    ScoreBoardEventProvider o =
-                        p.getOrCreate((Child<? extends ScoreBoardEventProvider>) prop, elementId, source);
+                    if (Boolean.parseBoolean(value)) {
+                        if (resolved != null) { resolved.clear(); }
+                        p.execute((Command) prop, source);
+                    }
+                } else if (hasRemainder) {
+                    Child<? extends ScoreBoardEventProvider> child = (Child<? extends ScoreBoardEventProvider>) prop;
+                    ScoreBoardEventProvider o = p.get(child, elementId);
+                    if (o == null) {
+                        // Creating an element may have side effects on others,
+                        // so don't rely on anything resolved before.
+                        if (resolved != null) { resolved.clear(); }
+                        o = p.getOrCreate(child, elementId, source);
+                    }
                     if (o == null) {
                         if (source.isFile()) {
                             // Expulsion data can only be set after the corresponding penalty has been added
                             if (prop == Game.EXPULSION) {
                                 postponedSets.add(new ExpulsionSet(p, (Child<Expulsion>) prop, elementId, source, flag,
-                                                                   remainder, value));
+                                                                   path.substring(end + 1), value));
                                 return;
                             }
                             // filter out elements that we intentionally drop
                             if (p.getProviderClass() == CurrentGame.class) { return; }
                             if (prop == Clients.CLIENT) { return; }
                         }
-                        Logger.printMessage("Could not get or create property " + readable);
+                        Logger.printMessage("Could not get or create property " + readable(p, name, elementId));
                         return;
                     }
-                    set(o, remainder, value, source, flag, postponedSets);
+                    if (resolved != null) { resolved.add(end, o); }
+                    p = o;
+                    start = end + 1;
+                    continue;
                 } else if (value == null) {
+                    if (resolved != null) { resolved.clear(); }
                     p.remove((Child<?>) prop, elementId, source);
                 } else if (prop.getType() == ValWithId.class) {
+                    if (resolved != null) { resolved.clear(); }
                     Child aprop = (Child) prop;
                     p.add(aprop, p.childFromString(aprop, elementId, value), source);
                 } else {
                     postponedSets.add(new ChildSet(p, (Child) prop, elementId, value, source));
                 }
             } catch (Exception e) {
-                Logger.printMessage("Exception handling update for " + readable + " - " + value + ": " + e.toString());
+                Logger.printMessage("Exception handling update for " + readable(p, name, elementId) + " - " + value +
+                                    ": " + e.toString());
                 Logger.printStackTrace(e);
             }
-        } else {
-            Logger.printMessage("Illegal path element: " + path);
+            return;
+        }
+    }
+
+    // Same as \w in a regex.
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static String readable(ScoreBoardEventProvider p, String name, String elementId) {
+        return p.getProviderName() + "(" + p.getProviderId() + ")." + name + "(" + elementId + ")";
+    }
+
+    /**
+     * The providers resolved for the elements of the previous path.
+     *
+     * Keys come sorted from autosaves and uploads, so most share all but the
+     * last element with the key before. Any change to the tree other than
+     * setting a postponed value drops what was resolved, as it may have
+     * removed one of the providers.
+     */
+    private static final class ResolvedPath {
+        // How many providers path can reuse, and forget about the others.
+        private int reuse(String path) {
+            int common = 0;
+            if (previous != null) {
+                int max = Math.min(path.length(), previous.length());
+                while (common < max && path.charAt(common) == previous.charAt(common)) { common++; }
+            }
+            while (depth > 0 && (ends[depth - 1] > common || ends[depth - 1] >= path.length() ||
+                                 path.charAt(ends[depth - 1]) != '.')) {
+                providers[--depth] = null;
+            }
+            previous = path;
+            return depth;
         }
+
+        // Nothing is added for the rest of a path after clear().
+        private void add(int end, ScoreBoardEventProvider provider) {
+            if (previous == null) { return; }
+            if (depth == ends.length) {
+                ends = Arrays.copyOf(ends, depth * 2);
+                providers = Arrays.copyOf(providers, depth * 2);
+            }
+            ends[depth] = end;
+            providers[depth] = provider;
+            depth++;
+        }
+
+        private void clear() {
+            Arrays.fill(providers, 0, depth, null);
+            depth = 0;
+            previous = null;
+        }
+
+        private String previous;
+        private int depth;
+        // ends[i] is the index in previous just after the element resolved to providers[i].
+        private int[] ends = new int[8];
+        private ScoreBoardEventProvider[] providers = new ScoreBoardEventProvider[8];
     }
 
     public static class JSONSet {
@@ -315,7 +329,7 @@ public class ScoreBoardJSONSetter {
                 return;
             }
             List<PropertySet> postponedSets = new ArrayList<>();
-            set(e, remainder, value, source, flag, postponedSets);
+            set(e, remainder, 0, value, source, flag, postponedSets, null);
             for (PropertySet s : postponedSets) { s.process(); }
         }
 
@@ -328,6 +342,5 @@ public class ScoreBoardJSONSetter {
         private String value;
     }
 
-    private static final Pattern pathElementPattern =
-        Pattern.compile("^(?<name>\\w+)(\\((?<id>[^\\)]*)\\))?(\\.(?<remainder>.*))?$");
+    private static final int ROOT_LENGTH = "ScoreBoard.".length();
 }
@@ -0,0 +1,265 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Rewrites state saved by older versions to the current version.
+ *
+ * Each version step is a list of rules. A rule applies to keys starting with
+ * its prefix (or equal to it, for exact rules), that also end with its suffix
+ * and meet its condition if it has those. It then drops the key or rewrites it.
+ * As in a chain of ifs, the first rule of a step that applies wins. The
+ * prefixes of a step are compiled into a trie, so the candidate rules for a
+ * key are found in a single walk over its first characters.
+ *
+ * A key is taken through all steps from the saved version on, so entries can
+ * be migrated one at a time in one pass, e.g. while they are being read.
+ */
+final class StateMigration {
+    // The migration for state saved by version, or null if there is nothing to do.
+    static StateMigration from(String version) {
+        for (int i = 0; i < STEPS.size(); i++) {
+            if (STEPS.get(i).from.equals(version)) { return new StateMigration(STEPS.subList(i, STEPS.size())); }
+        }
+        return null;
+    }
+
+    private StateMigration(List<Step> steps) { this.steps = steps; }
+
+    // The key in the current version, or null if it is dropped.
+    String migrateKey(String key) {
+        for (Step step : steps) {
+            Rule rule = step.find(key);
+            if (rule != null) { key = rule.rewrite.apply(key, this); }
+            if (key == null) { return null; }
+        }
+        return key;
+    }
+
+    // The value for key in the current version, key being already migrated.
+    Object migrateValue(String key, Object value) {
+        for (Step step : steps) {
+            for (ValueRule rule : step.valueRules) {
+                if (rule.applies.test(key) && rule.from.equals(value)) {
+                    value = rule.to;
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    // Guess the version of state without a ScoreBoard.Version(release) from its keys.
+    static String versionFromKeys(Set<String> keys) {
+        VersionGuess guess = new VersionGuess();
+        for (String key : keys) {
+            if (guess.add(key)) { break; }
+        }
+        return guess.get();
+    }
+
+    // The same guess, made as keys are seen one at a time.
+    static final class VersionGuess {
+        // Whether the version is certain, so later keys can be skipped.
+        boolean add(String key) {
+            if (minVersion.equals(maxVersion)) { return true; }
+            minVersion = minVersionWith(key, minVersion);
+            maxVersion = maxVersionWith(key, maxVersion);
+            return minVersion.equals(maxVersion);
+        }
+
+        // return highest possible version so unaplicable updates are skippped
+        String get() { return maxVersion; }
+
+        private String minVersion = "v4"; // lowest version possible from the keys seen so far
+        private String maxVersion = "v5"; // highest version possible from the keys seen so far
+    }
+
+    private static String minVersionWith(String key, String priorLimit) {
+        if (priorLimit.equals("v5") || key.startsWith("ScoreBoard.Game(") ||
+            key.startsWith("ScoreBoard.CurrentGame.")) {
+            return "v5";
+        }
+        if (priorLimit.equals("v4.1") || key.startsWith("ScoreBoard.Clients.") || key.endsWith(".RosterNumber") ||
+            key.endsWith(".ReadOnly") || (key.endsWith(".Annotation") && key.contains(".ScoringTrip("))) {
+            return "v4.1";
+        }
+        return priorLimit;
+    }
+    private static String maxVersionWith(String key, String priorLimit) {
+        if (priorLimit.equals("v4") || (key.startsWith("ScoreBoard.Clock(") && key.endsWith(".MinimumTime")) ||
+            (key.startsWith("ScoreBoard.Team(") && key.endsWith(".LastEndedTeamJam")) ||
+            (key.endsWith(".Number") && (key.contains(".Position(") || key.contains(".Skater(")))) {
+            return "v4";
+        }
+        if (priorLimit.equals("v4.1") || key.startsWith("ScoreBoard.Clock(") || key.startsWith("ScoreBoard.Period(") ||
+            key.startsWith("ScoreBoard.Jam(") || key.startsWith("ScoreBoard.Team(") ||
+            key.startsWith("ScoreBoard.PenaltyCodes.") || key.startsWith("ScoreBoard.Rulesets.Current") ||
+            (key.startsWith("ScoreBoard.Rulesets.Ruleset(") && key.endsWith(".ParentId")) ||
+            key.equals("ScoreBoard.CurrentPeriodNumber") || key.equals("ScoreBoard.CurrentPeriod") ||
+            key.equals("ScoreBoard.UpcomingJam") || key.equals("ScoreBoard.UpcomingJamNumber") ||
+            key.equals("ScoreBoard.InPeriod") || key.equals("ScoreBoard.InJam") ||
+            key.equals("ScoreBoard.InOvertime") || key.equals("ScoreBoard.OfficialScore") ||
+            key.equals("ScoreBoard.CurrentTimeout") || key.equals("ScoreBoard.TimeoutOwner") ||
+            key.equals("ScoreBoard.OfficialReview") || key.equals("ScoreBoard.NoMoreJam")) {
+            return "v4.1";
+        }
+        return priorLimit;
+    }
+
+    private final List<Step> steps;
+    // v5 moved the game to ScoreBoard.Game(id), with a new id.
+    private final String gamePrefix = "ScoreBoard.Game(" + UUID.randomUUID().toString() + ").";
+
+    private interface Rewrite {
+        // null drops the key.
+        String apply(String key, StateMigration migration);
+    }
+
+    private static final Rewrite DROP = (key, migration) -> null;
+
+    private static Rewrite replace(String from, String to) { return (key, migration) -> key.replace(from, to); }
+
+    // Moves ScoreBoard.from to ScoreBoard.Game(id).to.
+    private static Rewrite toGame(String from, String to) {
+        String fromPrefix = "ScoreBoard." + from;
+        return (key, migration) -> key.replace(fromPrefix, migration.gamePrefix.concat(to));
+    }
+
+    private static final class Rule {
+        private Rule(String prefix, boolean exact, String suffix, Predicate<String> condition, Rewrite rewrite) {
+            this.prefix = prefix;
+            this.exact = exact;
+            this.suffix = suffix;
+            this.condition = condition;
+            this.rewrite = rewrite;
+        }
+
+        private boolean appliesTo(String key) {
+            return (suffix == null || key.endsWith(suffix)) && (condition == null || condition.test(key));
+        }
+
+        private final String prefix;
+        private final boolean exact;
+        private final String suffix;
+        private final Predicate<String> condition;
+        private final Rewrite rewrite;
+    }
+
+    private static Rule prefix(String prefix, Rewrite rewrite) { return new Rule(prefix, false, null, null, rewrite); }
+    private static Rule prefix(String prefix, String suffix, Rewrite rewrite) {
+        return new Rule(prefix, false, suffix, null, rewrite);
+    }
+    private static Rule prefix(String prefix, String suffix, Predicate<String> condition, Rewrite rewrite) {
+        return new Rule(prefix, false, suffix, condition, rewrite);
+    }
+    private static Rule exact(String key, Rewrite rewrite) { return new Rule(key, true, null, null, rewrite); }
+
+    private static final class ValueRule {
+        private ValueRule(Predicate<String> applies, Object from, Object to) {
+            this.applies = applies;
+            this.from = from;
+            this.to = to;
+        }
+
+        private final Predicate<String> applies;
+        private final Object from;
+        private final Object to;
+    }
+
+    private static final class Step {
+        private Step(String from, List<Rule> rules, List<ValueRule> valueRules) {
+            this.from = from;
+            this.valueRules = valueRules;
+            for (int i = 0; i < rules.size(); i++) {
+                Rule rule = rules.get(i);
+                TrieNode node = root;
+                for (int j = 0; j < rule.prefix.length(); j++) {
+                    char c = rule.prefix.charAt(j);
+                    if (node.children[c] == null) { node.children[c] = new TrieNode(); }
+                    node = node.children[c];
+                }
+                (rule.exact ? node.exact : node.prefixed).add(i);
+            }
+            this.rules = rules.toArray(new Rule[0]);
+        }
+
+        // The first rule that applies to key, or null.
+        private Rule find(String key) {
+            int best = rules.length;
+            TrieNode node = root;
+            for (int i = 0; node != null; i++) {
+                best = first(node.prefixed, key, best);
+                if (i == key.length()) {
+                    best = first(node.exact, key, best);
+                    break;
+                }
+                char c = key.charAt(i);
+                node = c < TrieNode.CHARS ? node.children[c] : null;
+            }
+            return best < rules.length ? rules[best] : null;
+        }
+
+        private int first(List<Integer> candidates, String key, int best) {
+            for (int i : candidates) {
+                if (i < best && rules[i].appliesTo(key)) { return i; }
+            }
+            return best;
+        }
+
+        private final String from;
+        private final Rule[] rules;
+        private final List<ValueRule> valueRules;
+        private final TrieNode root = new TrieNode();
+    }
+
+    private static final class TrieNode {
+        // Rule prefixes are ASCII.
+        private static final int CHARS = 128;
+
+        private final TrieNode[] children = new TrieNode[CHARS];
+        // Indices of the rules with exactly this prefix, in order.
+        private final List<Integer> prefixed = new ArrayList<>();
+        private final List<Integer> exact = new ArrayList<>();
+    }
+
+    private static final List<Step> STEPS = Arrays.asList(
+        new Step("v4",
+                 Arrays.asList(prefix("ScoreBoard.Clock(", ".MinimumTime", DROP),
+                               prefix("ScoreBoard.Team(", ".LastEndedTeamJam", DROP),
+                               prefix("", ".Number",
+                                      key -> (key.contains(".Position(") || key.contains(".Skater(")) &&
+                                             !key.contains(".Penalty("),
+                                      replace(".Number", ".RosterNumber"))),
+                 Arrays.asList()),
+        new Step("v4.1",
+                 Arrays.asList(prefix("ScoreBoard.Rulesets.CurrentRule(", toGame("Rulesets.CurrentRule(", "Rule(")),
+                               prefix("ScoreBoard.Rulesets.Current", DROP),
+                               prefix("ScoreBoard.Rulesets.RuleDefinition(", DROP),
+                               prefix("ScoreBoard.Rulesets.Ruleset(", ".ParentId", replace(".ParentId", ".Parent")),
+                               prefix("ScoreBoard.PenaltyCodes.Code(", toGame("PenaltyCodes.Code(", "PenaltyCode(")),
+                               exact("ScoreBoard.Team(1).Name", toGame("Team(1).Name", "Team(1).TeamName")),
+                               exact("ScoreBoard.Team(2).Name", toGame("Team(2).Name", "Team(2).TeamName")),
+                               prefix("ScoreBoard.Clock(", toGame("", "")), prefix("ScoreBoard.Period(", toGame("", "")),
+                               prefix("ScoreBoard.Jam(", toGame("", "")), prefix("ScoreBoard.Team(", toGame("", "")),
+                               exact("ScoreBoard.CurrentPeriodNumber", toGame("", "")),
+                               exact("ScoreBoard.CurrentPeriod", toGame("", "")),
+                               exact("ScoreBoard.UpcomingJam", toGame("", "")),
+                               exact("ScoreBoard.UpcomingJamNumber", toGame("", "")),
+                               exact("ScoreBoard.InPeriod", toGame("", "")), exact("ScoreBoard.InJam", toGame("", "")),
+                               exact("ScoreBoard.InOvertime", toGame("", "")),
+                               exact("ScoreBoard.OfficialScore", toGame("", "")),
+                               exact("ScoreBoard.CurrentTimeout", toGame("", "")),
+                               exact("ScoreBoard.TimeoutOwner", toGame("", "")),
+                               exact("ScoreBoard.OfficialReview", toGame("", "")),
+                               exact("ScoreBoard.NoMoreJam", toGame("", "")),
+                               prefix("ScoreBoard.PreparedTeam", ".Name", key -> !key.contains("Skater"),
+                                      replace(".Name", ".TeamName"))),
+                 Arrays.asList(new ValueRule(key -> key.contains(".Skater(") && key.endsWith(".Flags"), "BC", "BA"),
+                               new ValueRule(key -> key.contains(".Skater(") && key.endsWith(".Flags"), "AC", "A"))));
+}
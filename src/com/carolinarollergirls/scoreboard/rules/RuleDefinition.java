@@ -31,6 +31,8 @@ public abstract class RuleDefinition extends ScoreBoardEventProviderImpl<RuleDef
     public void setParent(Rulesets p) {
         parent = p;
         scoreBoard = parent.getScoreBoard();
+        // Rule definitions are shared by the Rulesets of every scoreboard.
+        registerWith(p);
     }
 
     public enum Type {
@@ -0,0 +1,311 @@
+package com.carolinarollergirls.scoreboard.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Immutable sorted map backed by a persistent AVL tree.
+ *
+ * plus() and minus() return a new map that shares all untouched nodes with the
+ * old one, so an update costs O(log n) and every older version stays valid as a
+ * snapshot. subMap(), headMap() and tailMap() return bounded views of the same
+ * tree.
+ */
+public final class PersistentSortedMap<K extends Comparable<? super K>, V> extends AbstractMap<K, V>
+    implements SortedMap<K, V> {
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    private PersistentSortedMap(Node<K, V> root, K from, K to) {
+        this.root = root;
+        this.from = from;
+        this.to = to;
+    }
+
+    public PersistentSortedMap<K, V> plus(K key, V value) {
+        checkUnbounded();
+        Node<K, V> newRoot = insert(root, key, value);
+        return newRoot == root ? this : new PersistentSortedMap<>(newRoot, null, null);
+    }
+
+    public PersistentSortedMap<K, V> minus(K key) {
+        checkUnbounded();
+        Node<K, V> newRoot = delete(root, key);
+        if (newRoot == root) { return this; }
+        return newRoot == null ? empty() : new PersistentSortedMap<>(newRoot, null, null);
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> n = find(key);
+        return n == null ? null : n.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        if (from == null && to == null) { return size(root); }
+        return (to == null ? size(root) : rank(to)) - (from == null ? 0 : rank(from));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !new EntryIterator().hasNext();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+            @Override
+            public int size() {
+                return PersistentSortedMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return null;
+    }
+
+    @Override
+    public PersistentSortedMap<K, V> subMap(K fromKey, K toKey) {
+        if (fromKey.compareTo(toKey) > 0) { throw new IllegalArgumentException("fromKey > toKey"); }
+        checkInRange(fromKey, "fromKey");
+        checkInRange(toKey, "toKey");
+        return new PersistentSortedMap<>(root, fromKey, toKey);
+    }
+
+    @Override
+    public PersistentSortedMap<K, V> headMap(K toKey) {
+        checkInRange(toKey, "toKey");
+        return new PersistentSortedMap<>(root, from, toKey);
+    }
+
+    @Override
+    public PersistentSortedMap<K, V> tailMap(K fromKey) {
+        checkInRange(fromKey, "fromKey");
+        return new PersistentSortedMap<>(root, fromKey, to);
+    }
+
+    @Override
+    public K firstKey() {
+        EntryIterator it = new EntryIterator();
+        if (!it.hasNext()) { throw new NoSuchElementException(); }
+        return it.next().getKey();
+    }
+
+    @Override
+    public K lastKey() {
+        Node<K, V> last = null;
+        Node<K, V> n = root;
+        while (n != null) {
+            if (to != null && n.key.compareTo(to) >= 0) {
+                n = n.left;
+            } else {
+                last = n;
+                n = n.right;
+            }
+        }
+        if (last == null || (from != null && last.key.compareTo(from) < 0)) { throw new NoSuchElementException(); }
+        return last.key;
+    }
+
+    // As for TreeMap, the bounds of a view of a view must lie within its range.
+    private void checkInRange(K key, String name) {
+        if ((from != null && key.compareTo(from) < 0) || (to != null && key.compareTo(to) > 0)) {
+            throw new IllegalArgumentException(name + " out of range");
+        }
+    }
+
+    private void checkUnbounded() {
+        if (from != null || to != null) { throw new UnsupportedOperationException("Can't modify a range view"); }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<K, V> find(Object key) {
+        K k = (K) key;
+        if ((from != null && k.compareTo(from) < 0) || (to != null && k.compareTo(to) >= 0)) { return null; }
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = k.compareTo(n.key);
+            if (c == 0) { return n; }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    // Number of keys in the whole tree that are smaller than key.
+    private int rank(K key) {
+        int r = 0;
+        Node<K, V> n = root;
+        while (n != null) {
+            if (key.compareTo(n.key) <= 0) {
+                n = n.left;
+            } else {
+                r += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return r;
+    }
+
+    private static int height(Node<?, ?> n) { return n == null ? 0 : n.height; }
+    private static int size(Node<?, ?> n) { return n == null ? 0 : n.size; }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> insert(Node<K, V> n, K key, V value) {
+        if (n == null) { return new Node<>(key, value, null, null); }
+        int c = key.compareTo(n.key);
+        if (c < 0) {
+            Node<K, V> left = insert(n.left, key, value);
+            return left == n.left ? n : balance(n.key, n.value, left, n.right);
+        } else if (c > 0) {
+            Node<K, V> right = insert(n.right, key, value);
+            return right == n.right ? n : balance(n.key, n.value, n.left, right);
+        }
+        if (value == n.value) { return n; }
+        return new Node<>(n.key, value, n.left, n.right);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> delete(Node<K, V> n, K key) {
+        if (n == null) { return null; }
+        int c = key.compareTo(n.key);
+        if (c < 0) {
+            Node<K, V> left = delete(n.left, key);
+            return left == n.left ? n : balance(n.key, n.value, left, n.right);
+        } else if (c > 0) {
+            Node<K, V> right = delete(n.right, key);
+            return right == n.right ? n : balance(n.key, n.value, n.left, right);
+        }
+        if (n.left == null) { return n.right; }
+        if (n.right == null) { return n.left; }
+        Node<K, V> successor = n.right;
+        while (successor.left != null) { successor = successor.left; }
+        return balance(successor.key, successor.value, n.left, deleteFirst(n.right));
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> deleteFirst(Node<K, V> n) {
+        if (n.left == null) { return n.right; }
+        return balance(n.key, n.value, deleteFirst(n.left), n.right);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> balance(K key, V value, Node<K, V> l,
+                                                                             Node<K, V> r) {
+        if (height(l) > height(r) + 1) {
+            if (height(l.left) >= height(l.right)) {
+                return new Node<>(l.key, l.value, l.left, new Node<>(key, value, l.right, r));
+            }
+            return new Node<>(l.right.key, l.right.value, new Node<>(l.key, l.value, l.left, l.right.left),
+                              new Node<>(key, value, l.right.right, r));
+        }
+        if (height(r) > height(l) + 1) {
+            if (height(r.right) >= height(r.left)) {
+                return new Node<>(r.key, r.value, new Node<>(key, value, l, r.left), r.right);
+            }
+            return new Node<>(r.left.key, r.left.value, new Node<>(key, value, l, r.left.left),
+                              new Node<>(r.key, r.value, r.left.right, r.right));
+        }
+        return new Node<>(key, value, l, r);
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private EntryIterator() {
+            Node<K, V> n = root;
+            while (n != null) {
+                if (from == null || n.key.compareTo(from) >= 0) {
+                    stack.push(n);
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && (to == null || stack.peek().key.compareTo(to) < 0);
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) { throw new NoSuchElementException(); }
+            Node<K, V> result = stack.pop();
+            for (Node<K, V> n = result.right; n != null; n = n.left) { stack.push(n); }
+            return result;
+        }
+
+        private Deque<Node<K, V>> stack = new ArrayDeque<>();
+    }
+
+    private static final class Node<K, V> implements Map.Entry<K, V> {
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+        @Override
+        public V getValue() {
+            return value;
+        }
+        @Override
+        public V setValue(V v) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) { return false; }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size;
+    }
+
+    private final Node<K, V> root;
+    // Bounds of a range view, from is inclusive and to exclusive. null means unbounded.
+    private final K from;
+    private final K to;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentSortedMap EMPTY = new PersistentSortedMap<>(null, null, null);
+}
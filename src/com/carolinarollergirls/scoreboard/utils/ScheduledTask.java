@@ -0,0 +1,61 @@
+package com.carolinarollergirls.scoreboard.utils;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle for a task that runs once on a shared ScheduledExecutorService.
+ *
+ * Like TimerTask, cancel() only returns true if it kept the task from
+ * starting. A task that is already running, e.g. waiting for the core lock,
+ * can't be cancelled any more.
+ */
+public final class ScheduledTask {
+    public static ScheduledTask schedule(ScheduledExecutorService executor, Runnable task, long delayMs) {
+        ScheduledTask t = new ScheduledTask(task, PENDING);
+        t.future = executor.schedule(t::fire, delayMs, TimeUnit.MILLISECONDS);
+        return t;
+    }
+
+    private ScheduledTask(Runnable task, int state) {
+        this.task = task;
+        this.state = new AtomicInteger(state);
+    }
+
+    public boolean cancel() {
+        if (!state.compareAndSet(PENDING, CANCELLED)) { return false; }
+        Future<?> f = future;
+        if (f != null) { f.cancel(false); }
+        return true;
+    }
+
+    // Runs the task on the calling thread instead, if it is still pending. For tests.
+    public void runNow() {
+        Future<?> f = future;
+        if (f != null) { f.cancel(false); }
+        fire();
+    }
+
+    // Whether the task has neither started nor been cancelled yet.
+    public boolean isPending() { return state.get() == PENDING; }
+
+    private void fire() {
+        if (!state.compareAndSet(PENDING, STARTED)) { return; }
+        try {
+            task.run();
+        } catch (RuntimeException e) { Logger.printStackTrace(e); }
+    }
+
+    private final Runnable task;
+    private final AtomicInteger state;
+    private volatile Future<?> future;
+
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    // Never runs and can't be cancelled, for fields that need an initial value.
+    public static final ScheduledTask NONE = new ScheduledTask(() -> {}, STARTED);
+}
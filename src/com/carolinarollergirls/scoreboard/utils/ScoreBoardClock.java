@@ -5,15 +5,26 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.carolinarollergirls.scoreboard.core.ScoreBoardImpl;
-
-public class ScoreBoardClock extends TimerTask {
+import com.carolinarollergirls.scoreboard.event.ModelThread;
+
+/**
+ * Time source for the scoreboard.
+ *
+ * Clients are updated by a thread that only wakes up when a client has asked
+ * for it via requestUpdate(), at the time it asked for. With no clock running
+ * the thread is parked. Reading the time always brings the clients up to date
+ * first, so they don't need to be woken up just to stay current.
+ */
+public class ScoreBoardClock implements Runnable {
     private ScoreBoardClock() {
         offset = System.currentTimeMillis();
-        timer.scheduleAtFixedRate(this, CLOCK_UPDATE_INTERVAL / 4, CLOCK_UPDATE_INTERVAL / 4);
+        Thread scheduler = new Thread(this::runScheduler, "ScoreBoard clock");
+        // Nothing is lost if it stops with the JVM, and it mustn't keep the JVM alive.
+        scheduler.setDaemon(true);
+        scheduler.start();
         dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
         dateFormat.setTimeZone(TimeZone.getDefault());
     }
@@ -45,6 +56,8 @@ public class ScoreBoardClock extends TimerTask {
             // idle until it has caught up, instead of advancing the clocks by the desired
             // amount.
             offset -= lastRewind;
+            // Pending wakeups were computed with the old offset.
+            wakeUpAt(0);
         }
     }
 
@@ -53,23 +66,29 @@ public class ScoreBoardClock extends TimerTask {
     }
 
     public void advance(long ms) {
-        synchronized (coreLock) {
-            currentTime += ms;
-            updateClients();
-        }
+        ModelThread.runAndWait(() -> {
+            synchronized (coreLock) {
+                currentTime += ms;
+                updateClients();
+            }
+        });
     }
 
     public void stop() {
-        synchronized (coreLock) {
-            updateTime();
-            stopCounter++;
-        }
+        ModelThread.runAndWait(() -> {
+            synchronized (coreLock) {
+                updateTime();
+                stopCounter++;
+            }
+        });
     }
 
     public void start(boolean doCatchUp) {
         synchronized (coreLock) {
             if (!doCatchUp) { offset = System.currentTimeMillis() - currentTime; }
             stopCounter--;
+            // Let the clients ask for their next update.
+            if (stopCounter == 0) { wakeUpAt(0); }
         }
     }
 
@@ -77,6 +96,48 @@ public class ScoreBoardClock extends TimerTask {
         synchronized (coreLock) { clients.add(client); }
     }
 
+    public void unregisterClient(ScoreBoardClockClient client) {
+        synchronized (coreLock) { clients.remove(client); }
+    }
+
+    /**
+     * Makes sure clients are updated once the current time reaches time. Clients
+     * call this from updateTime() for as long as they have work to do.
+     */
+    public void requestUpdate(long time) {
+        synchronized (coreLock) {
+            if (stopCounter > 0) { return; }
+            wakeUpAt(time + offset);
+        }
+    }
+
+    private void wakeUpAt(long systemTime) {
+        synchronized (wakeLock) {
+            if (systemTime < wakeAt) {
+                wakeAt = systemTime;
+                wakeLock.notify();
+            }
+        }
+    }
+
+    private void runScheduler() {
+        while (true) {
+            synchronized (wakeLock) {
+                long now = System.currentTimeMillis();
+                while (wakeAt > now) {
+                    try {
+                        wakeLock.wait(wakeAt == Long.MAX_VALUE ? 0 : wakeAt - now);
+                    } catch (InterruptedException e) { return; }
+                    now = System.currentTimeMillis();
+                }
+                wakeAt = Long.MAX_VALUE;
+            }
+            try {
+                run();
+            } catch (RuntimeException e) { Logger.printStackTrace(e); }
+        }
+    }
+
     private void updateTime() {
         if (stopCounter == 0) {
             currentTime = System.currentTimeMillis() - offset;
@@ -90,6 +151,16 @@ public class ScoreBoardClock extends TimerTask {
 
     @Override
     public void run() {
+        if (ModelThread.isStarted() && !ModelThread.isCurrentThread()) {
+            // Don't queue up ticks if the model thread is busy, the next one catches up.
+            if (tickPending.compareAndSet(false, true)) {
+                ModelThread.post(() -> {
+                    tickPending.set(false);
+                    run();
+                });
+            }
+            return;
+        }
         synchronized (coreLock) {
             if (stopCounter == 0) { updateTime(); }
         }
@@ -100,7 +171,9 @@ public class ScoreBoardClock extends TimerTask {
     private int stopCounter = 0;
     private long lastRewind = 0;
 
-    private Timer timer = new Timer();
+    private Object wakeLock = new Object();
+    private long wakeAt = Long.MAX_VALUE; // system time, guarded by wakeLock
+    private AtomicBoolean tickPending = new AtomicBoolean();
 
     private SimpleDateFormat dateFormat;
 
@@ -119,7 +119,8 @@ public class StatsbookExporter extends Thread {
             }
             success = true;
         } catch (Exception e) { Logger.printStackTrace(e); } finally {
-            game.exportDone(success);
+            final boolean done = success;
+            game.runInBatch(() -> game.exportDone(done));
         }
     }
 
@@ -3,20 +3,26 @@ package com.carolinarollergirls.scoreboard.core.game;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.carolinarollergirls.scoreboard.core.ScoreBoardImpl;
 import com.carolinarollergirls.scoreboard.core.game.GameImpl.Button;
 import com.carolinarollergirls.scoreboard.core.game.GameImpl.GameSnapshot;
+import com.carolinarollergirls.scoreboard.core.interfaces.ArchivedGame;
 import com.carolinarollergirls.scoreboard.core.interfaces.Clock;
 import com.carolinarollergirls.scoreboard.core.interfaces.CurrentGame;
 import com.carolinarollergirls.scoreboard.core.interfaces.FloorPosition;
@@ -39,13 +45,18 @@ import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Flag;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Source;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProviderImpl;
 import com.carolinarollergirls.scoreboard.event.ScoreBoardListener;
+import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONListener;
 import com.carolinarollergirls.scoreboard.rules.Rule;
+import com.carolinarollergirls.scoreboard.utils.BasePath;
 import com.carolinarollergirls.scoreboard.utils.ClockConversion;
 import com.carolinarollergirls.scoreboard.utils.ScoreBoardClock;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
 
 public class GameImplTests {
 
+    @org.junit.Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
     private ScoreBoardImpl sb;
     private GameImpl g;
     private Clock pc;
@@ -2182,4 +2193,58 @@ public class GameImplTests {
         g.set(Rule.NUMBER_PERIODS, "zz");
         assertEquals(6, g.getInt(Rule.NUMBER_PERIODS));
     }
+
+    @Test
+    public void testFinishedGameIsArchived() throws Exception {
+        File oldDir = BasePath.get();
+        dir.newFolder("config", "penalties");
+        Files.copy(oldDir.toPath().resolve("config/penalties/wftda2018.json"),
+                   dir.getRoot().toPath().resolve("config/penalties/wftda2018.json"));
+        BasePath.set(dir.getRoot());
+        try {
+            checkFinishedGameIsArchived();
+        } finally { BasePath.set(oldDir); }
+    }
+
+    private void checkFinishedGameIsArchived() {
+        new ScoreBoardJSONListener(sb, sb.getJsm());
+        // Long enough for the scheduler to never get to it, the test runs it instead.
+        sb.getSettings().set(Game.SETTING_ARCHIVE_DELAY, "60:00");
+        String id = g.getId();
+        fastForwardJams(2);
+        lc.stop();
+        pc.stop();
+        g.setOfficialScore(true);
+        assertEquals(Game.State.FINISHED, g.get(Game.STATE));
+        sb.runInBatch(() -> {});
+        String prefix = "ScoreBoard.Game(" + id + ")";
+        Map<String, Object> before = sb.getJsm().getState().subMap(prefix, prefix + '\uffff');
+
+        Game other = new GameImpl(sb, "other");
+        sb.add(ScoreBoard.GAME, other);
+        sb.getCurrentGame().load(other);
+        assertTrue(g.archiveTask.isPending());
+        g.archiveTask.runNow();
+        ArchivedGame archived = sb.get(ScoreBoard.ARCHIVED_GAME, id);
+        assertNotNull(archived);
+        sb.runInBatch(() -> {});
+        File file = archived.getFile();
+        assertTrue(file.getPath().startsWith(dir.getRoot().getPath()));
+        assertNull(sb.get(ScoreBoard.GAME, id));
+        assertTrue(file.exists());
+        assertEquals(g.get(Game.NAME), archived.get(ArchivedGame.NAME));
+        assertTrue(sb.getJsm().getState().subMap(prefix, prefix + '\uffff').isEmpty());
+
+        sb.getSettings().set(Game.SETTING_ARCHIVE_DELAY, "");
+        Game restored = sb.getGame(id);
+        assertNotEquals(g, restored);
+        assertNull(sb.get(ScoreBoard.ARCHIVED_GAME, id));
+        assertEquals(Game.State.FINISHED, restored.get(Game.STATE));
+        assertEquals(2, restored.getCurrentPeriod().getCurrentJam().getNumber());
+        // Loading gives the elements in the game new ids, but otherwise the game is as it was.
+        Map<String, Object> after = sb.getJsm().getState().subMap(prefix, prefix + '\uffff');
+        assertEquals(before.keySet(), after.keySet());
+        assertEquals(before.get(prefix + ".Name"), after.get(prefix + ".Name"));
+        assertEquals(before.get(prefix + ".Team(1).Score"), after.get(prefix + ".Team(1).Score"));
+    }
 }
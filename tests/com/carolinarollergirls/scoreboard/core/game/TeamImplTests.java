@@ -253,6 +253,30 @@ public class TeamImplTests {
         assertEquals(3, team.getCurrentTrip().getNumber());
     }
 
+    @Test
+    public void testTimersDontNeedThreadPerTeam() {
+        int before = countTimerThreads();
+        for (int i = 0; i < 20; i++) {
+            Game game = new GameImpl(sb, "timers" + i);
+            sb.add(ScoreBoard.GAME, game);
+            game.startJam();
+            for (String id : new String[] {Team.ID_1, Team.ID_2}) {
+                game.getTeam(id).set(Team.TRIP_SCORE, 4);
+                game.getTeam(id).set(Team.ACTIVE_SCORE_ADJUSTMENT_AMOUNT, 2);
+            }
+        }
+        // At most the shared timer thread of this scoreboard is new.
+        assertTrue(countTimerThreads() - before <= 1);
+    }
+
+    private int countTimerThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("Timer-") || t.getName().equals("ScoreBoard timers")) { count++; }
+        }
+        return count;
+    }
+
     @Test
     public void testDisplayLead() {
         assertFalse(team.isLost());
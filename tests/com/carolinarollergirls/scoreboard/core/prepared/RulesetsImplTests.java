@@ -1,6 +1,7 @@
 package com.carolinarollergirls.scoreboard.core.prepared;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import com.carolinarollergirls.scoreboard.core.interfaces.Rulesets;
 import com.carolinarollergirls.scoreboard.core.interfaces.Rulesets.Ruleset;
 import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
 import com.carolinarollergirls.scoreboard.rules.Rule;
+import com.carolinarollergirls.scoreboard.rules.RuleDefinition;
 import com.carolinarollergirls.scoreboard.utils.ValWithId;
 
 public class RulesetsImplTests {
@@ -53,4 +55,13 @@ public class RulesetsImplTests {
         rulesets.removeRuleset(id1);
         assertEquals(root, grandchild.getParentRuleset());
     }
+
+    @Test
+    public void testRuleDefinitionsResolveInEveryScoreBoard() {
+        ScoreBoard other = new ScoreBoardImpl();
+        String name = Rule.PERIOD_DURATION.toString();
+        RuleDefinition definition = Rule.PERIOD_DURATION.getRuleDefinition();
+        assertSame(definition, sb.getElement(RuleDefinition.class, name));
+        assertSame(definition, other.getElement(RuleDefinition.class, name));
+    }
 }
@@ -5,7 +5,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 
@@ -702,6 +705,124 @@ public class EventPackageTests {
         assertEquals(-5, (int) child.get(TestScoreBoardEventProvider.RECALCULATED));
     }
 
+    @Test
+    public void testPathCaching() {
+        TestScoreBoardEventProvider child =
+            new TestScoreBoardEventProviderImpl(root, "ID", TestScoreBoardEventProvider.MULTIPLE);
+        root.add(TestScoreBoardEventProvider.MULTIPLE, child);
+        TestNumberedScoreBoardEventProvider numbered1 = new TestNumberedScoreBoardEventProviderImpl(root, 1);
+        root.add(TestScoreBoardEventProvider.NUMBERED, numbered1);
+        TestNumberedScoreBoardEventProvider numbered2 = new TestNumberedScoreBoardEventProviderImpl(root, 2);
+        root.add(TestScoreBoardEventProvider.NUMBERED, numbered2);
+
+        assertEquals("ScoreBoard.Multiple(ID)", child.getPath());
+        assertTrue(child.getPath() == child.getPath());
+        assertEquals("ScoreBoard.Multiple(ID).Int", child.getPath(TestScoreBoardEventProvider.INT));
+        assertTrue(child.getPath(TestScoreBoardEventProvider.INT) == child.getPath(TestScoreBoardEventProvider.INT));
+        assertEquals("ScoreBoard.Numbered(2)", numbered2.getPath());
+
+        numbered1.delete();
+        assertEquals("ScoreBoard.Numbered(1)", numbered2.getPath());
+        assertEquals("ScoreBoard.Numbered(1).Id", numbered2.getPath(ScoreBoardEventProvider.ID));
+    }
+
+    @Test
+    public void testListenerOrder() {
+        final List<String> calls = new ArrayList<>();
+        final ScoreBoardListener removed = new ScoreBoardListener() {
+            @Override
+            public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                calls.add("removed");
+            }
+        };
+        root.addScoreBoardListener(
+            new ConditionalScoreBoardListener<>(root, TestScoreBoardEventProvider.INT, new ScoreBoardListener() {
+                @Override
+                public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                    calls.add("int1");
+                    root.removeScoreBoardListener(removed);
+                }
+            }));
+        root.addScoreBoardListener(new ScoreBoardListener() {
+            @Override
+            public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                if (event.getProperty() != ScoreBoardEventProviderImpl.BATCH_START &&
+                    event.getProperty() != ScoreBoardEventProviderImpl.BATCH_END) {
+                    calls.add("any");
+                }
+            }
+        });
+        root.addScoreBoardListener(
+            new ConditionalScoreBoardListener<>(root, TestScoreBoardEventProvider.RECALCULATED, listener));
+        root.addScoreBoardListener(removed);
+        root.addScoreBoardListener(
+            new ConditionalScoreBoardListener<>(root, TestScoreBoardEventProvider.INT, new ScoreBoardListener() {
+                @Override
+                public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                    calls.add("int2");
+                }
+            }));
+
+        root.set(TestScoreBoardEventProvider.INT, 5);
+        // A listener removed during dispatch still gets the current event.
+        assertEquals(Arrays.asList("int1", "any", "removed", "int2"), calls);
+        assertEquals(0, collectedEvents.size());
+
+        calls.clear();
+        root.set(TestScoreBoardEventProvider.INT, 6);
+        assertEquals(Arrays.asList("int1", "any", "int2"), calls);
+    }
+
+    @Test
+    public void testEventsReachAncestors() {
+        TestScoreBoardEventProvider child =
+            new TestScoreBoardEventProviderImpl(root, "ID", TestScoreBoardEventProvider.MULTIPLE);
+        root.add(TestScoreBoardEventProvider.MULTIPLE, child);
+        TestScoreBoardEventProvider grandchild =
+            new TestScoreBoardEventProviderImpl(child, "GC", TestScoreBoardEventProvider.MULTIPLE);
+        child.add(TestScoreBoardEventProvider.MULTIPLE, grandchild);
+        root.addScoreBoardListener(new ConditionalScoreBoardListener<>(TestScoreBoardEventProvider.class, "GC",
+                                                                       TestScoreBoardEventProvider.INT, listener));
+
+        grandchild.set(TestScoreBoardEventProvider.INT, 5);
+        assertEquals(1, collectedEvents.size());
+        assertEquals(grandchild, collectedEvents.poll().getProvider());
+
+        root.remove(TestScoreBoardEventProvider.MULTIPLE, child);
+        collectedEvents.clear();
+        grandchild.set(TestScoreBoardEventProvider.INT, 6);
+        assertEquals(0, collectedEvents.size());
+    }
+
+    @Test
+    public void testElementRegistry() {
+        TestScoreBoardEventProvider child =
+            new TestScoreBoardEventProviderImpl(root, "ID", TestScoreBoardEventProvider.MULTIPLE);
+        root.add(TestScoreBoardEventProvider.MULTIPLE, child);
+        TestScoreBoardEventProvider otherRoot = new TestScoreBoardEventProviderImpl();
+        TestScoreBoardEventProvider otherChild =
+            new TestScoreBoardEventProviderImpl(otherRoot, "ID", TestScoreBoardEventProvider.MULTIPLE);
+        otherRoot.add(TestScoreBoardEventProvider.MULTIPLE, otherChild);
+        assertTrue(child == root.getElement(TestScoreBoardEventProvider.class, "ID"));
+        assertTrue(otherChild == otherRoot.getElement(TestScoreBoardEventProvider.class, "ID"));
+
+        int mark = root.getAliasMark();
+        child.set(ScoreBoardEventProvider.ID, "ID", ScoreBoardEventProvider.Source.JSON);
+        assertEquals(mark, root.getAliasMark());
+        child.set(ScoreBoardEventProvider.ID, "FileId", ScoreBoardEventProvider.Source.JSON);
+        assertEquals("ID", child.getId());
+        assertTrue(child == root.getElement(TestScoreBoardEventProvider.class, "FileId"));
+        assertNull(otherRoot.getElement(TestScoreBoardEventProvider.class, "FileId"));
+
+        root.cleanupAliasesSince(mark);
+        assertNull(root.getElement(TestScoreBoardEventProvider.class, "FileId"));
+        assertTrue(child == root.getElement(TestScoreBoardEventProvider.class, "ID"));
+
+        child.delete();
+        assertNull(root.getElement(TestScoreBoardEventProvider.class, "ID"));
+        assertTrue(otherChild == otherRoot.getElement(TestScoreBoardEventProvider.class, "ID"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testThrowsOnSettingPropertyFromDifferentClass() {
         root.set(Jam.DURATION, 0L);
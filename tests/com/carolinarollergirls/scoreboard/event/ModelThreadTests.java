@@ -0,0 +1,193 @@
+package com.carolinarollergirls.scoreboard.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.carolinarollergirls.scoreboard.core.ScoreBoardImpl;
+import com.carolinarollergirls.scoreboard.core.game.GameImpl;
+import com.carolinarollergirls.scoreboard.core.interfaces.Clock;
+import com.carolinarollergirls.scoreboard.core.interfaces.CurrentGame;
+import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
+import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Flag;
+import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Source;
+import com.carolinarollergirls.scoreboard.json.JSONStateManager;
+import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONListener;
+import com.carolinarollergirls.scoreboard.json.ScoreBoardJSONSetter;
+import com.carolinarollergirls.scoreboard.utils.BasePath;
+import com.carolinarollergirls.scoreboard.utils.ScoreBoardClock;
+
+public class ModelThreadTests {
+
+    @org.junit.Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+    private File oldDir;
+
+    private ScoreBoardImpl sb;
+    private JSONStateManager jsm;
+    private String gameId;
+
+    @Before
+    public void setUp() throws Exception {
+        oldDir = BasePath.get();
+        BasePath.set(dir.getRoot());
+        dir.newFolder("config", "penalties");
+        Files.copy(oldDir.toPath().resolve("config/penalties/wftda2018.json"),
+                   dir.getRoot().toPath().resolve("config/penalties/wftda2018.json"));
+
+        ScoreBoardClock.getInstance().stop();
+        GameImpl.setQuickClockThreshold(0L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ModelThread.stop();
+        ScoreBoardClock.getInstance().start(false);
+        GameImpl.setQuickClockThreshold(1000L);
+        BasePath.set(oldDir);
+    }
+
+    private void createScoreBoard() {
+        sb = new ScoreBoardImpl();
+        jsm = new JSONStateManager();
+        new ScoreBoardJSONListener(sb, jsm);
+        sb.runInBatch(new Runnable() {
+            @Override
+            public void run() {
+                sb.postAutosaveUpdate();
+                sb.getSettings().set(ScoreBoard.SETTING_CLOCK_AFTER_TIMEOUT, Clock.ID_LINEUP);
+                sb.getSettings().set(Clock.SETTING_SYNC, String.valueOf(false));
+            }
+        });
+        gameId = sb.getCurrentGame().get(CurrentGame.GAME).getId();
+    }
+
+    private void set(String key, Object value) { set(key, value, null); }
+    private void set(String key, Object value, Flag flag) {
+        ScoreBoardJSONSetter.JSONSet js =
+            new ScoreBoardJSONSetter.JSONSet(key, value == null ? null : value.toString(), flag);
+        sb.runInBatch(new Runnable() {
+            @Override
+            public void run() {
+                ScoreBoardJSONSetter.set(sb, Collections.singletonList(js), Source.WS);
+            }
+        });
+    }
+
+    private void advance(long ms) { ScoreBoardClock.getInstance().advance(ms); }
+
+    private List<String> playGame() {
+        createScoreBoard();
+        String game = "ScoreBoard.Game(" + gameId + ")";
+        set(game + ".Team(1).Skater(s1).Name", "Alpha");
+        set(game + ".Team(1).Skater(s1).RosterNumber", "12");
+        set(game + ".Team(2).Skater(s2).Name", "Beta");
+        set(game + ".Team(2).Skater(s2).RosterNumber", "34");
+        set(game + ".Team(1).TeamName", "Home");
+        set(game + ".StartJam", true);
+        advance(5000);
+        set(game + ".Team(1).Lead", true);
+        set(game + ".Team(1).TripScore", 4);
+        set(game + ".Team(1).AddTrip", true);
+        advance(20000);
+        set(game + ".Team(2).TripScore", 3);
+        set(game + ".StopJam", true);
+        advance(30000);
+        set(game + ".StartJam", true);
+        advance(10000);
+        set(game + ".Team(2).Score", 2, Flag.CHANGE);
+        set(game + ".Timeout", true);
+        set(game + ".Team(2).Timeout", true);
+        advance(60000);
+        set(game + ".StopJam", true);
+        set(game + ".ClockUndo", true);
+        advance(1000);
+        return normalizedState();
+    }
+
+    // Ids and wall times differ between runs, so only compare what's left.
+    private List<String> normalizedState() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Object> e : jsm.getState().entrySet()) {
+            if (e.getKey().contains("Walltime") || e.getKey().contains("LocalTime")) { continue; }
+            result.add(normalize(e.getKey()) + "=" + normalize(String.valueOf(e.getValue())));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private String normalize(String s) {
+        return s.replaceAll("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "<id>");
+    }
+
+    @Test
+    public void testSameStateWithModelThread() {
+        List<String> withLocks = playGame();
+        ModelThread.start();
+        List<String> withModelThread = playGame();
+
+        assertTrue(withLocks.size() > 1000);
+        assertEquals(withLocks, withModelThread);
+    }
+
+    @Test
+    public void testChangesRunOnModelThread() throws Exception {
+        ModelThread.start();
+        createScoreBoard();
+        final AtomicInteger offThread = new AtomicInteger();
+        sb.getSettings().addScoreBoardListener(new ScoreBoardListener() {
+            @Override
+            public void scoreBoardChange(ScoreBoardEvent<?> event) {
+                if (!ModelThread.isCurrentThread()) { offThread.incrementAndGet(); }
+            }
+        });
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int n = i;
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50; j++) { set("ScoreBoard.Settings.Setting(Test." + n + ")", j); }
+                }
+            });
+        }
+        for (Thread t : writers) { t.start(); }
+        for (Thread t : writers) { t.join(); }
+        advance(1000);
+
+        assertEquals(0, offThread.get());
+        for (int i = 0; i < 4; i++) { assertEquals("49", sb.getSettings().get("Test." + i)); }
+        assertFalse(ModelThread.isCurrentThread());
+    }
+
+    @Test
+    public void testExceptionsReachCaller() {
+        ModelThread.start();
+        try {
+            ModelThread.runAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("boom");
+                }
+            });
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+            return;
+        }
+        throw new AssertionError("Exception was swallowed");
+    }
+}
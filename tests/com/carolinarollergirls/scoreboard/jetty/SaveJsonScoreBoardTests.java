@@ -0,0 +1,69 @@
+package com.carolinarollergirls.scoreboard.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carolinarollergirls.scoreboard.utils.PersistentSortedMap;
+
+public class SaveJsonScoreBoardTests {
+    private PersistentSortedMap<String, Object> state;
+
+    @Before
+    public void setup() {
+        state = PersistentSortedMap.empty();
+        for (String key : Arrays.asList("ScoreBoard.Game(1).Name", "ScoreBoard.Game(1).Team(1).Name",
+                                        "ScoreBoard.Game(10).Name", "ScoreBoard.Game(2).Name",
+                                        "ScoreBoard.Settings.Setting(A)", "ScoreBoard.Version(release)")) {
+            state = state.plus(key, key);
+        }
+    }
+
+    private List<String> keys(String path) {
+        List<String> keys = new ArrayList<>();
+        for (SortedMap<String, Object> range : SaveJsonScoreBoard.getRanges(state, path)) {
+            keys.addAll(range.keySet());
+        }
+        return keys;
+    }
+
+    @Test
+    public void ranges_match_prefixes() {
+        assertEquals(new ArrayList<>(state.keySet()), keys(null));
+        assertEquals(Arrays.asList("ScoreBoard.Game(1).Name", "ScoreBoard.Game(1).Team(1).Name",
+                                   "ScoreBoard.Version(release)"),
+                     keys("ScoreBoard.Game(1)."));
+        assertEquals(Arrays.asList("ScoreBoard.Game(2).Name", "ScoreBoard.Settings.Setting(A)",
+                                   "ScoreBoard.Version(release)"),
+                     keys("ScoreBoard.Settings,ScoreBoard.Game(2)"));
+    }
+
+    @Test
+    public void overlapping_prefixes_are_exported_once() {
+        assertEquals(Arrays.asList("ScoreBoard.Game(1).Name", "ScoreBoard.Game(1).Team(1).Name",
+                                   "ScoreBoard.Game(10).Name", "ScoreBoard.Version(release)"),
+                     keys("ScoreBoard.Game(1).Team,ScoreBoard.Game(1"));
+    }
+
+    @Test
+    public void gzip_negotiation() {
+        assertTrue(SaveJsonScoreBoard.acceptsGzip("gzip, deflate, br"));
+        assertTrue(SaveJsonScoreBoard.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"));
+        assertFalse(SaveJsonScoreBoard.acceptsGzip("gzip;q=0"));
+        assertFalse(SaveJsonScoreBoard.acceptsGzip("identity"));
+        assertFalse(SaveJsonScoreBoard.acceptsGzip(null));
+
+        assertTrue(SaveJsonScoreBoard.matches("\"1f\"", "\"1f\""));
+        assertTrue(SaveJsonScoreBoard.matches("\"a\", W/\"1f\"", "\"1f\""));
+        assertFalse(SaveJsonScoreBoard.matches("\"1f\"", "\"1f-gzip\""));
+        assertFalse(SaveJsonScoreBoard.matches(null, "\"1f\""));
+    }
+}
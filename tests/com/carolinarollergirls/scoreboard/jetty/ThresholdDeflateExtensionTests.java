@@ -0,0 +1,71 @@
+package com.carolinarollergirls.scoreboard.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThresholdDeflateExtensionTests {
+    private ThresholdDeflateExtension extension;
+    private List<Frame> sent = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        extension = new ThresholdDeflateExtension();
+        extension.init(WebSocketPolicy.newServerPolicy(), new MappedByteBufferPool());
+        extension.setDeflaterPool(new DeflaterPool(0, Deflater.DEFAULT_COMPRESSION, true));
+        extension.setInflaterPool(new InflaterPool(0, true));
+        extension.setNextOutgoingFrames((frame, callback, batchMode) -> {
+            sent.add(frame);
+            if (callback != null) { callback.writeSuccess(); }
+        });
+        ExtensionConfig offer = ExtensionConfig.parse(ThresholdDeflateExtension.NAME + "; client_max_window_bits");
+        extension.setConfig(ThresholdDeflateExtension.withThreshold(offer, 100));
+    }
+
+    private void send(int length) {
+        char[] payload = new char[length];
+        Arrays.fill(payload, 'a');
+        extension.outgoingFrame(new TextFrame().setPayload(new String(payload)), null, BatchMode.OFF);
+    }
+
+    @Test
+    public void threshold_is_per_instance_and_not_negotiated() {
+        assertEquals(100, extension.getThreshold());
+        assertFalse(extension.getConfig().getParameterizedName().contains("x-crg"));
+        assertEquals(256, new ThresholdDeflateExtension().getThreshold());
+    }
+
+    @Test
+    public void small_messages_are_not_compressed() {
+        send(99);
+        assertEquals(1, sent.size());
+        assertFalse(sent.get(0).isRsv1());
+        assertEquals(99, sent.get(0).getPayloadLength());
+    }
+
+    @Test
+    public void large_messages_are_compressed() {
+        send(1000);
+        assertTrue(sent.size() >= 1);
+        assertTrue(sent.get(0).isRsv1());
+        int length = 0;
+        for (Frame f : sent) { length += f.getPayloadLength(); }
+        assertTrue(length < 1000);
+    }
+}
@@ -1,8 +1,18 @@
 package com.carolinarollergirls.scoreboard.jetty;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -100,4 +110,133 @@ public class WSTests {
         assertTrue(pt.covers("ScoreBoard.Rulesets.Rule(Jam)"));
         assertTrue(pt.covers("ScoreBoard.Rulesets.Rule(Intermission.Direction)"));
     }
+
+    @Test
+    public void subscription_index_matches_path_trie() {
+        String[] patterns = {"ScoreBoard.Period", "ScoreBoard.Period(1).Jam(1).StarPass", "ScoreBoard.Period(*).Bar",
+                             "ScoreBoard.Period(*).Jam(1).Foo(*).Bar", "ScoreBoard.Period*",
+                             "ScoreBoard.Rulesets.Rule(Jam.*)", "ScoreBoard.Rulesets.Rule(*)"};
+        String[] keys = {"ScoreBoard.Period", "ScoreBoard.Period(1)", "ScoreBoard.Period.Jam", "ScoreBoard.PeriodFoo",
+                         "ScoreBoard.Period(2).Bar", "ScoreBoard.Period(1).Jam(1).Foo(2).Bar.Baz",
+                         "ScoreBoard.Period(1).Jam(2).Foo(2).Bar", "ScoreBoard.Period*",
+                         "ScoreBoard.Rulesets.Rule(Jam.Foo.Bar)", "ScoreBoard.Rulesets.Rule(Period.Duration)",
+                         "ScoreBoard", "Scoreboard.Period"};
+        SubscriptionIndex<String> index = new SubscriptionIndex<>();
+        for (String p : patterns) { index.add(p, p); }
+        for (String k : keys) {
+            List<String> matches = new ArrayList<>();
+            index.collect(k, matches);
+            for (String p : patterns) {
+                WS.PathTrie trie = new WS.PathTrie();
+                trie.add(p);
+                assertEquals(p + " " + k, trie.covers(k), matches.contains(p));
+            }
+        }
+
+        index.removeAll("ScoreBoard.Period");
+        List<String> matches = new ArrayList<>();
+        index.collect("ScoreBoard.Period(2).Bar", matches);
+        assertEquals(Arrays.asList("ScoreBoard.Period(*).Bar"), matches);
+
+        for (String p : patterns) { index.removeAll(p); }
+        matches.clear();
+        index.collect("ScoreBoard.Period(2).Bar", matches);
+        assertEquals(Collections.emptyList(), matches);
+        index.add("ScoreBoard.Period(*).Bar", "again");
+        index.collect("ScoreBoard.Period(2).Bar", matches);
+        assertEquals(Arrays.asList("again"), matches);
+    }
+
+    @Test
+    public void binary_round_trip() {
+        BinaryStateEncoder enc = new BinaryStateEncoder();
+        BinaryDecoder dec = new BinaryDecoder();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Time", 120000L);
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Running", true);
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Name", "Jam \u2603");
+        updates.put("ScoreBoard.CurrentGame.Team(1).Skater(abc)", null);
+        updates.put("ScoreBoard.Version", -5L);
+        assertEquals(updates, dec.decode(enc.encode(updates, 1L << 50)));
+        assertEquals(1L << 50, dec.sequence);
+
+        updates.clear();
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Time", 119000L);
+        updates.put("ScoreBoard.CurrentGame.Team(1).Score", 4);
+        updates.put("ScoreBoard.Huge", Long.MAX_VALUE);
+        updates.put("ScoreBoard.List", Arrays.asList(1, 2));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("ScoreBoard.CurrentGame.Clock(Jam).Time", 119000L);
+        expected.put("ScoreBoard.CurrentGame.Team(1).Score", 4L);
+        expected.put("ScoreBoard.Huge", "json:9223372036854775807");
+        expected.put("ScoreBoard.List", "json:[1,2]");
+        assertEquals(expected, dec.decode(enc.encode(updates, (1L << 50) + 3)));
+        assertEquals((1L << 50) + 3, dec.sequence);
+        assertEquals(Collections.emptyMap(), dec.decode(enc.encode(Collections.emptyMap(), -1)));
+        assertEquals((1L << 50) + 3, dec.sequence);
+    }
+
+    @Test
+    public void binary_repeated_paths_are_small() {
+        BinaryStateEncoder enc = new BinaryStateEncoder();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("ScoreBoard.CurrentGame.Clock(Period).Time", 1800000L);
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Time", 120000L);
+        enc.encode(updates, 100);
+
+        updates.put("ScoreBoard.CurrentGame.Clock(Period).Time", 1799000L);
+        updates.put("ScoreBoard.CurrentGame.Clock(Jam).Time", 119000L);
+        // Version, sequence, #paths, #updates and 2 times id, tag and a 2 byte delta.
+        assertEquals(12, enc.encode(updates, 101).remaining());
+    }
+
+    // Same as the decoder in WS.js.
+    private static class BinaryDecoder {
+        Map<String, Object> decode(ByteBuffer b) {
+            Map<String, Object> state = new HashMap<>();
+            assertEquals(BinaryStateEncoder.VERSION, b.get());
+            sequence += signed(b);
+            for (long i = varint(b); i > 0; i--) { paths.add(text(b)); }
+            int id = 0;
+            for (long i = varint(b); i > 0; i--) {
+                id += varint(b);
+                int tag = b.get();
+                Object v;
+                switch (tag) {
+                case BinaryStateEncoder.NULL: v = null; break;
+                case BinaryStateEncoder.FALSE: v = false; break;
+                case BinaryStateEncoder.TRUE: v = true; break;
+                case BinaryStateEncoder.INT: v = signed(b); break;
+                case BinaryStateEncoder.INT_DELTA: v = ints.get(id) + signed(b); break;
+                case BinaryStateEncoder.STRING: v = text(b); break;
+                default: v = "json:" + text(b); break;
+                }
+                ints.put(id, v instanceof Long ? (Long) v : null);
+                state.put(paths.get(id), v);
+            }
+            return state;
+        }
+
+        private long varint(ByteBuffer b) {
+            long result = 0;
+            for (int shift = 0;; shift += 7) {
+                byte x = b.get();
+                result |= (long) (x & 0x7F) << shift;
+                if (x >= 0) { return result; }
+            }
+        }
+        private long signed(ByteBuffer b) {
+            long z = varint(b);
+            return (z >>> 1) ^ -(z & 1);
+        }
+        private String text(ByteBuffer b) {
+            byte[] bytes = new byte[(int) varint(b)];
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long sequence;
+        private List<String> paths = new ArrayList<>();
+        private Map<Integer, Long> ints = new HashMap<>();
+    }
 }
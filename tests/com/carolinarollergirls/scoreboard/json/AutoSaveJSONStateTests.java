@@ -0,0 +1,106 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.jr.ob.JSON;
+
+public class AutoSaveJSONStateTests {
+
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    private JSONStateManager jsm;
+    private AutoSaveJSONState autosave;
+
+    @Before
+    public void setUp() {
+        jsm = new JSONStateManager();
+        jsm.updateState("ScoreBoard.Settings.Setting(A)", "a");
+        jsm.updateState("ScoreBoard.Settings.Setting(B)", "b");
+        autosave = new AutoSaveJSONState(jsm, dir.getRoot());
+        jsm.waitForSent();
+    }
+
+    private Map<String, Object> saved() throws Exception { return saved(dir.getRoot()); }
+    private Map<String, Object> saved(File d) throws Exception {
+        Map<String, Object> state = new HashMap<>();
+        AutoSaveJSONState.readAutoSave(AutoSaveJSONState.findFile(0, d), state::put);
+        return state;
+    }
+
+    @Test
+    public void changes_are_journaled() throws Exception {
+        jsm.updateState("ScoreBoard.Settings.Setting(A)", "changed");
+        jsm.updateState("ScoreBoard.Settings.Setting(B)", null);
+        jsm.updateState("ScoreBoard.Settings.Setting(C)", 3);
+        jsm.waitForSent();
+
+        assertEquals(new HashMap<>(jsm.getState()), saved());
+        // The checkpoint itself is still the initial one.
+        Map<?, ?> checkpoint = JSON.std.mapFrom(AutoSaveJSONState.getFile(0, dir.getRoot()));
+        assertEquals("b", ((Map<?, ?>) checkpoint.get("state")).get("ScoreBoard.Settings.Setting(B)"));
+    }
+
+    @Test
+    public void incomplete_entry_is_ignored() throws Exception {
+        jsm.updateState("ScoreBoard.Settings.Setting(A)", "changed");
+        jsm.waitForSent();
+        File[] journals = dir.getRoot().listFiles((d, name) -> name.endsWith(".jsonl"));
+        assertEquals(1, journals.length);
+        try (FileWriter out = new FileWriter(journals[0], true)) { out.write("{\"state\":{\"ScoreBoard.Settings"); }
+
+        assertEquals(new HashMap<>(jsm.getState()), saved());
+    }
+
+    @Test
+    public void checkpoint_starts_new_journal() throws Exception {
+        jsm.updateState("ScoreBoard.Settings.Setting(A)", "changed");
+        jsm.waitForSent();
+        autosave.run();
+        jsm.updateState("ScoreBoard.Settings.Setting(B)", "changed");
+        jsm.waitForSent();
+
+        File[] journals = dir.getRoot().listFiles((d, name) -> name.endsWith(".jsonl"));
+        assertEquals(1, journals.length);
+        assertTrue(AutoSaveJSONState.getFile(1, dir.getRoot()).exists());
+        assertEquals(new HashMap<>(jsm.getState()), saved());
+    }
+
+    @Test
+    public void binary_checkpoints() throws Exception {
+        jsm.updateState("ScoreBoard.Settings.Setting(C)", 3);
+        jsm.updateState("ScoreBoard.Settings.Setting(D)", 1.5);
+        jsm.updateState("ScoreBoard.Settings.Setting(E)", true);
+        File binaryDir = dir.newFolder();
+        new AutoSaveJSONState(jsm, binaryDir, true);
+        jsm.updateState("ScoreBoard.Settings.Setting(A)", "changed");
+        jsm.waitForSent();
+
+        File checkpoint = AutoSaveJSONState.getFile(0, binaryDir, true);
+        assertEquals(checkpoint, AutoSaveJSONState.findFile(0, binaryDir));
+        assertEquals(new HashMap<>(jsm.getState()), saved(binaryDir));
+
+        // A damaged checkpoint is rejected before anything is read from it.
+        byte[] b = Files.readAllBytes(checkpoint.toPath());
+        b[b.length / 2] ^= 1;
+        Files.write(checkpoint.toPath(), b);
+        try {
+            saved(binaryDir);
+            fail();
+        } catch (IOException e) {}
+    }
+}
@@ -0,0 +1,77 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JSONStateFileTests {
+
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    private File write(String json) throws IOException {
+        File f = dir.newFile();
+        try (FileWriter out = new FileWriter(f)) { out.write(json); }
+        return f;
+    }
+
+    private Map<String, Object> read(File f) throws IOException {
+        Map<String, Object> state = new LinkedHashMap<>();
+        new JSONStateFile(f).read(state::put);
+        return state;
+    }
+
+    @Test
+    public void entries_are_read_in_order() throws Exception {
+        File f = write("{\"state\": {\"ScoreBoard.Settings.Setting(B)\": \"b\", \"ScoreBoard.Game(g).Jam(1).Number\": 1,"
+                       + " \"ScoreBoard.Game(g).InJam\": false, \"ScoreBoard.Settings.Setting(A)\": null,"
+                       + " \"ScoreBoard.Game(g).Clock(Jam).Time\": 1.5, \"ScoreBoard.Version(release)\": \"v5\"},"
+                       + " \"journal\": \"journal-1.jsonl\", \"other\": [1, 2]}");
+        JSONStateFile file = new JSONStateFile(f);
+        assertEquals("journal-1.jsonl", file.getField("journal"));
+        assertEquals(Arrays.asList(1, 2), file.getField("other"));
+
+        List<Object> entries = new ArrayList<>();
+        file.read((key, value) -> entries.addAll(Arrays.asList(key, value)));
+        assertEquals(Arrays.asList("ScoreBoard.Settings.Setting(B)", "b", "ScoreBoard.Game(g).Jam(1).Number", 1,
+                                   "ScoreBoard.Game(g).InJam", false, "ScoreBoard.Settings.Setting(A)", null,
+                                   "ScoreBoard.Game(g).Clock(Jam).Time", 1.5, "ScoreBoard.Version(release)", "v5"),
+                     entries);
+    }
+
+    @Test
+    public void entries_are_migrated() throws Exception {
+        // The version comes after the keys, as in a sorted save.
+        Map<String, Object> state = read(write("{\"state\": {\"ScoreBoard.InJam\": true,"
+                                               + " \"ScoreBoard.Rulesets.CurrentRulesetId\": \"x\","
+                                               + " \"ScoreBoard.Version(release)\": \"v4.1\"}}"));
+        assertEquals(2, state.size());
+        assertTrue(state.keySet().iterator().next().matches("ScoreBoard\\.Game\\(.*\\)\\.InJam"));
+        assertEquals(true, state.values().iterator().next());
+    }
+
+    @Test
+    public void malformed_files_are_rejected_before_reading() throws Exception {
+        for (String json : Arrays.asList("{\"state\": {\"ScoreBoard.Settings.Setting(A)\": \"a\",",
+                                         "{\"state\": {\"ScoreBoard.Settings.Setting(A)\": \"a\"}} trailing",
+                                         "{\"notState\": {}}", "[]")) {
+            try {
+                new JSONStateFile(write(json));
+                fail(json);
+            } catch (IOException e) {}
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.carolinarollergirls.scoreboard.json;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -112,4 +119,125 @@ public class JSONStateManagerTests {
         jsm.waitForSent();
         assertEquals(hm, listener.state);
     }
+
+    @Test
+    public void slow_listener_gets_merged_updates() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Set<String>> deliveries = new ArrayList<>();
+        jsm.register(new JSONStateListener() {
+            @Override
+            public void sendUpdates(Map<String, Object> state, Set<String> changed) {
+                deliveries.add(changed);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {}
+                listener.sendUpdates(state, changed);
+            }
+        });
+        blocked.await();
+        for (int i = 0; i < 100; i++) { jsm.updateState("foo." + i, i); }
+        jsm.updateState("foo.0", "last");
+        release.countDown();
+        jsm.waitForSent();
+
+        // The initial state, then everything else at once.
+        assertEquals(2, deliveries.size());
+        assertEquals(2, listener.num_updates);
+        assertEquals(100, deliveries.get(1).size());
+        assertEquals("last", listener.state.get("foo.0"));
+        assertEquals(99, listener.state.get("foo.99"));
+        assertTrue(deliveries.get(0).isEmpty());
+    }
+
+    @Test
+    public void many_listeners_share_threads() {
+        int threadsBefore = Thread.activeCount();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        List<TestListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            TestListener l = new TestListener() {
+                @Override
+                public synchronized void sendUpdates(Map<String, Object> state, Set<String> changed) {
+                    // Updates must arrive in order.
+                    int last = this.state == null ? -1 : (Integer) this.state.getOrDefault("n", -1);
+                    if ((Integer) state.getOrDefault("n", 0) < last) { outOfOrder.incrementAndGet(); }
+                    super.sendUpdates(state, changed);
+                }
+            };
+            listeners.add(l);
+            jsm.register(l);
+        }
+        for (int n = 0; n < 100; n++) { jsm.updateState("n", n); }
+        jsm.waitForSent();
+
+        assertEquals(0, outOfOrder.get());
+        for (TestListener l : listeners) { assertEquals(99, l.state.get("n")); }
+        assertTrue(Thread.activeCount() - threadsBefore <= Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    public void state_since_has_missed_changes() {
+        jsm.updateState("foo.1", "a");
+        long seen = jsm.getFullState().sequence;
+        jsm.updateState("foo.2", "b");
+        jsm.updateState("foo.1", null);
+        jsm.updateState("foo.2", "c");
+
+        JSONStateManager.StateDelta delta = jsm.getStateSince(seen);
+        assertEquals(seen + 3, delta.sequence);
+        assertEquals(new HashSet<>(Arrays.asList("foo.1", "foo.2")), delta.changed);
+        assertEquals("c", delta.state.get("foo.2"));
+        assertTrue(jsm.getStateSince(delta.sequence).changed.isEmpty());
+        assertNull(jsm.getStateSince(delta.sequence + 1));
+
+        for (int i = 0; i < JSONStateManager.LOG_KEYS; i++) { jsm.updateState("n", i); }
+        assertNull(jsm.getStateSince(seen));
+    }
+
+    @Test
+    public void large_changes_are_not_logged() {
+        long seen = jsm.getFullState().sequence;
+        jsm.updateState("foo", 1);
+        assertEquals(Collections.singleton("foo"), jsm.getStateSince(seen).changed);
+
+        List<WSUpdate> updates = new ArrayList<>();
+        for (int i = 0; i <= JSONStateManager.LOG_KEYS; i++) { updates.add(new WSUpdate("bar." + i, i)); }
+        jsm.updateState(updates);
+        long afterImport = jsm.getFullState().sequence;
+        assertNull(jsm.getStateSince(seen));
+
+        jsm.updateState("foo", 2);
+        assertEquals(Collections.singleton("foo"), jsm.getStateSince(afterImport).changed);
+    }
+
+    @Test
+    public void range_listener_only_gets_its_keys() {
+        jsm.updateState("Game(1).a", 1);
+        jsm.updateState("Game(10).a", 1);
+        jsm.register(listener, "Game(1)", "Game(1).b", "Version");
+        jsm.waitForSent();
+        assertEquals(1, listener.num_updates);
+        assertEquals(new HashSet<>(Arrays.asList("Game(1).a")), listener.changed);
+
+        jsm.updateState("Game(10).a", 2);
+        jsm.updateState("Game(2).a", 2);
+        jsm.waitForSent();
+        assertEquals(1, listener.num_updates);
+
+        List<WSUpdate> updates = new ArrayList<>();
+        updates.add(new WSUpdate("Game(1).b.c", 1));
+        updates.add(new WSUpdate("Game(10).b", 1));
+        updates.add(new WSUpdate("Version", 1));
+        jsm.updateState(updates);
+        jsm.waitForSent();
+        assertEquals(2, listener.num_updates);
+        assertEquals(new HashSet<>(Arrays.asList("Game(1).b.c", "Version")), listener.changed);
+
+        jsm.unregister(listener);
+        jsm.updateState("Game(1).a", 3);
+        jsm.waitForSent();
+        assertEquals(2, listener.num_updates);
+    }
 }
@@ -1,9 +1,12 @@
 package com.carolinarollergirls.scoreboard.json;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -27,6 +30,7 @@ import com.carolinarollergirls.scoreboard.core.interfaces.ScoreBoard;
 import com.carolinarollergirls.scoreboard.core.interfaces.Skater;
 import com.carolinarollergirls.scoreboard.core.interfaces.Team;
 import com.carolinarollergirls.scoreboard.core.prepared.RulesetsImpl;
+import com.carolinarollergirls.scoreboard.event.ScoreBoardEventProvider.Source;
 import com.carolinarollergirls.scoreboard.rules.Rule;
 import com.carolinarollergirls.scoreboard.utils.BasePath;
 import com.carolinarollergirls.scoreboard.utils.ScoreBoardClock;
@@ -44,10 +48,12 @@ public class ScoreBoardJSONListenerTests {
     private File oldDir;
 
     private Map<String, Object> state;
+    private int updateCount;
     private JSONStateListener jsonListener = new JSONStateListener() {
         @Override
         public void sendUpdates(Map<String, Object> s, Set<String> changed) {
             state = s;
+            updateCount++;
         }
     };
 
@@ -123,6 +129,23 @@ public class ScoreBoardJSONListenerTests {
         assertEquals(true, state.get("ScoreBoard.Game(" + gameId + ").OfficialScore"));
     }
 
+    @Test
+    public void testClockTicksPublishOneUpdate() {
+        Game g2 = new GameImpl(sb, "g2");
+        sb.add(ScoreBoard.GAME, g2);
+        g.startJam();
+        g2.startJam();
+        advance(0);
+        updateCount = 0;
+
+        // Time is only published when the displayed second changes.
+        advance(5000);
+        assertEquals(1, updateCount);
+        assertEquals(115000L, state.get("ScoreBoard.Game(" + gameId + ").Clock(Jam).Time"));
+        assertEquals(115000L, state.get("ScoreBoard.Game(g2).Clock(Jam).Time"));
+        assertEquals(115000L, state.get("ScoreBoard.CurrentGame.Clock(Jam).Time"));
+    }
+
     @Test
     public void testTeamEvents() {
         g.startJam();
@@ -459,4 +482,33 @@ public class ScoreBoardJSONListenerTests {
         assertEquals("/images/fullscreen/new.png",
                      state.get("ScoreBoard.Media.Format(images).Type(fullscreen).File(new.png).Src"));
     }
+
+    @Test
+    public void testSetterReresolvesRemovedElements() {
+        String skater = "ScoreBoard.Game(" + gameId + ").Team(1).Skater(00000000-0000-0000-0000-000000000001)";
+        List<ScoreBoardJSONSetter.JSONSet> sets = new ArrayList<>();
+        sets.add(new ScoreBoardJSONSetter.JSONSet(skater + ".Name", "Uno", null));
+        sets.add(new ScoreBoardJSONSetter.JSONSet(skater + ".RosterNumber", "01", null));
+        sets.add(new ScoreBoardJSONSetter.JSONSet(skater, null, null));
+        sets.add(new ScoreBoardJSONSetter.JSONSet(skater + ".Name", "Dos", null));
+        sets.add(new ScoreBoardJSONSetter.JSONSet(skater + "Name", "Bad", null));
+        ScoreBoardJSONSetter.set(sb, sets, Source.WS);
+        advance(0);
+
+        assertEquals("Dos", state.get(skater + ".Name"));
+        assertEquals("", state.get(skater + ".RosterNumber"));
+        assertEquals(1, g.getTeam(Team.ID_1).numberOf(Team.SKATER));
+    }
+
+    @Test
+    public void testLoadedIdsAreNotKept() throws Exception {
+        File autosaveDir = dir.newFolder("autosave");
+        new AutoSaveJSONState(jsm, autosaveDir);
+        jsm.waitForSent();
+
+        ScoreBoardImpl loaded = new ScoreBoardImpl();
+        assertTrue(AutoSaveJSONState.loadAutoSave(loaded, autosaveDir));
+        assertEquals(gameId, loaded.getCurrentGame().get(CurrentGame.GAME).getId());
+        assertEquals(0, loaded.getAliasMark());
+    }
 }
@@ -0,0 +1,62 @@
+package com.carolinarollergirls.scoreboard.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StateMigrationTests {
+
+    @Test
+    public void current_version_is_left_alone() {
+        assertNull(StateMigration.from("v5"));
+        Map<String, Object> state = new HashMap<>();
+        state.put("ScoreBoard.Version(release)", "v5");
+        state.put("ScoreBoard.Clock(Jam).Number", 3);
+        assertSame(state, ScoreBoardJSONSetter.updateToCurrentVersion(state));
+    }
+
+    @Test
+    public void first_matching_rule_wins() {
+        StateMigration migration = StateMigration.from("v4.1");
+        assertNull(migration.migrateKey("ScoreBoard.Rulesets.CurrentRulesetId"));
+        assertNull(migration.migrateKey("ScoreBoard.Rulesets.RuleDefinition(Foo).Type"));
+        assertEquals("ScoreBoard.Rulesets.Ruleset(x).Parent",
+                     migration.migrateKey("ScoreBoard.Rulesets.Ruleset(x).ParentId"));
+        assertTrue(migration.migrateKey("ScoreBoard.Rulesets.CurrentRule(Jam.Duration)")
+                       .matches("ScoreBoard\\.Game\\(.*\\)\\.Rule\\(Jam\\.Duration\\)"));
+        assertTrue(migration.migrateKey("ScoreBoard.Team(1).Name").endsWith(").Team(1).TeamName"));
+        assertTrue(migration.migrateKey("ScoreBoard.Team(1).Color").endsWith(").Team(1).Color"));
+        assertEquals("ScoreBoard.Settings.Setting(A)", migration.migrateKey("ScoreBoard.Settings.Setting(A)"));
+        assertEquals("ScoreBoard.InJamX", migration.migrateKey("ScoreBoard.InJamX"));
+    }
+
+    @Test
+    public void keys_go_through_all_later_steps() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("ScoreBoard.Clock(Jam).MinimumTime", 0);
+        state.put("ScoreBoard.Team(1).Skater(s).Number", "12");
+        state.put("ScoreBoard.Team(1).Skater(s).Penalty(1).Number", 1);
+        state.put("ScoreBoard.Team(1).Skater(s).Flags", "BC");
+
+        Map<String, Object> migrated = ScoreBoardJSONSetter.updateToCurrentVersion(state);
+        String game = migrated.keySet().iterator().next();
+        game = game.substring(0, game.indexOf(").") + 2);
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(game + "Team(1).Skater(s).RosterNumber", "12");
+        expected.put(game + "Team(1).Skater(s).Penalty(1).Number", 1);
+        expected.put(game + "Team(1).Skater(s).Flags", "BA");
+        assertEquals(expected, migrated);
+        assertEquals("v4", StateMigration.versionFromKeys(state.keySet()));
+        assertEquals("v4.1", StateMigration.versionFromKeys(
+                                 new HashSet<>(Arrays.asList("ScoreBoard.Clients.Client(a).Id", "ScoreBoard.InJam"))));
+    }
+}
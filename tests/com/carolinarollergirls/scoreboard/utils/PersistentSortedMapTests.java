@@ -0,0 +1,118 @@
+package com.carolinarollergirls.scoreboard.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PersistentSortedMapTests {
+
+    @Test
+    public void empty_map() {
+        PersistentSortedMap<String, Object> m = PersistentSortedMap.empty();
+        assertTrue(m.isEmpty());
+        assertEquals(0, m.size());
+        assertNull(m.get("foo"));
+        assertSame(m, m.minus("foo"));
+    }
+
+    @Test
+    public void old_versions_are_unchanged() {
+        PersistentSortedMap<String, Object> m1 = PersistentSortedMap.<String, Object>empty().plus("a", 1).plus("b", 2);
+        PersistentSortedMap<String, Object> m2 = m1.plus("c", 3).minus("a").plus("b", 4);
+
+        assertEquals(2, m1.size());
+        assertEquals(1, m1.get("a"));
+        assertEquals(2, m1.get("b"));
+        assertFalse(m1.containsKey("c"));
+
+        assertEquals(2, m2.size());
+        assertFalse(m2.containsKey("a"));
+        assertEquals(4, m2.get("b"));
+        assertEquals(3, m2.get("c"));
+    }
+
+    @Test
+    public void noop_updates_return_same_map() {
+        Object v = new Object();
+        PersistentSortedMap<String, Object> m = PersistentSortedMap.<String, Object>empty().plus("a", v);
+        assertSame(m, m.plus("a", v));
+        assertSame(m, m.minus("b"));
+    }
+
+    @Test
+    public void range_views() {
+        PersistentSortedMap<String, Object> m = PersistentSortedMap.empty();
+        for (String k : new String[] {"foo", "foo.1", "foo.1.a", "foo.2", "foo/", "fop", "fo"}) { m = m.plus(k, k); }
+
+        PersistentSortedMap<String, Object> sub = m.subMap("foo.", "foo/");
+        assertEquals(3, sub.size());
+        assertEquals("foo.1", sub.firstKey());
+        assertEquals("foo.2", sub.lastKey());
+        assertTrue(sub.containsKey("foo.1.a"));
+        assertFalse(sub.containsKey("foo"));
+        assertFalse(sub.containsKey("foo/"));
+        assertEquals(1, sub.subMap("foo.1.", "foo.1/").size());
+        assertEquals(0, m.subMap("g", "h").size());
+        assertTrue(m.subMap("g", "h").isEmpty());
+        assertEquals(2, m.headMap("foo.1").size());
+        assertEquals(2, m.tailMap("foo/").size());
+    }
+
+    @Test
+    public void nested_views_must_stay_in_range() {
+        PersistentSortedMap<String, Object> m = PersistentSortedMap.empty();
+        for (String k : new String[] {"a", "b", "c", "d", "e"}) { m = m.plus(k, k); }
+        PersistentSortedMap<String, Object> sub = m.subMap("b", "d");
+
+        assertEquals(1, sub.subMap("c", "d").size());
+        assertEquals(1, sub.headMap("c").size());
+        assertEquals(0, sub.tailMap("d").size());
+        for (Runnable r : new Runnable[] {() -> sub.subMap("a", "c"), () -> sub.subMap("c", "e"),
+                                          () -> sub.headMap("e"), () -> sub.headMap("a"), () -> sub.tailMap("a"),
+                                          () -> sub.tailMap("e")}) {
+            try {
+                r.run();
+                fail();
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+
+    @Test
+    public void matches_tree_map() {
+        Random r = new Random(42);
+        TreeMap<String, Object> expected = new TreeMap<>();
+        PersistentSortedMap<String, Object> m = PersistentSortedMap.empty();
+        List<PersistentSortedMap<String, Object>> versions = new ArrayList<>();
+        List<TreeMap<String, Object>> expectedVersions = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String key = "k" + r.nextInt(500);
+            if (r.nextInt(3) == 0) {
+                expected.remove(key);
+                m = m.minus(key);
+            } else {
+                expected.put(key, i);
+                m = m.plus(key, i);
+            }
+            if (i % 500 == 0) {
+                versions.add(m);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+        assertEquals(expected, m);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(m.keySet()));
+        assertEquals(expected.subMap("k2", "k3"), m.subMap("k2", "k3"));
+        assertEquals(expected.subMap("k2", "k3").size(), m.subMap("k2", "k3").size());
+        for (int i = 0; i < versions.size(); i++) { assertEquals(expectedVersions.get(i), versions.get(i)); }
+    }
+}
@@ -0,0 +1,66 @@
+package com.carolinarollergirls.scoreboard.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ScoreBoardClockTests {
+
+    private ScoreBoardClock sbc = ScoreBoardClock.getInstance();
+    private List<ScoreBoardClock.ScoreBoardClockClient> clients = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ScoreBoardClock.ScoreBoardClockClient client : clients) { sbc.unregisterClient(client); }
+    }
+
+    private void register(ScoreBoardClock.ScoreBoardClockClient client) {
+        clients.add(client);
+        sbc.registerClient(client);
+    }
+
+    @Test
+    public void testNoUpdatesWhileIdle() throws Exception {
+        final AtomicInteger updates = new AtomicInteger();
+        register(new ScoreBoardClock.ScoreBoardClockClient() {
+            @Override
+            public void updateTime(long ms) {
+                updates.incrementAndGet();
+            }
+        });
+
+        Thread.sleep(500);
+        assertEquals(0, updates.get());
+    }
+
+    @Test
+    public void testUpdatesAtRequestedTimes() throws Exception {
+        final long start = sbc.getCurrentTime();
+        final AtomicInteger step = new AtomicInteger(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        register(new ScoreBoardClock.ScoreBoardClockClient() {
+            @Override
+            public void updateTime(long ms) {
+                if (step.get() > 3) { return; }
+                if (ms >= start + step.get() * 100) { step.incrementAndGet(); }
+                if (step.get() > 3) {
+                    done.countDown();
+                } else {
+                    sbc.requestUpdate(start + step.get() * 100);
+                }
+            }
+        });
+        sbc.requestUpdate(start + 100);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(sbc.getCurrentTime() >= start + 300);
+    }
+}